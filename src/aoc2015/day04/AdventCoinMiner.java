@@ -0,0 +1,303 @@
+package aoc2015.day04;
+
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Parallel mining engine for AdventCoins. The nonce space is split into fixed
+ * size blocks that are submitted as independent tasks to a worker pool. Every worker
+ * thread reuses its own MessageDigest and input buffer, in which the nonce
+ * digits are incremented in place, and the prefix is matched directly on the
+ * nibbles of the raw digest rather than on a hex encoded string.
+ *
+ * Blocks are mined in rounds of increasing nonces and a round is always
+ * completed before the result is determined, hence the miner always returns
+ * the smallest qualifying nonce, regardless of the thread scheduling.
+ *
+ * @author Joris
+ */
+public class AdventCoinMiner {
+	/** The number of nonces in a single block of work */
+	private static final int BLOCK_SIZE = 50000;
+
+	/** The upper limit on nonces to try */
+	private static final long MAX_NONCE = 1000000000l;
+
+	/** The pool that executes the mining tasks */
+	private final ForkJoinPool pool;
+
+	/** The total number of hashes computed by all workers */
+	private final LongAdder hashes;
+
+	/** The total time spent by all workers, in nanoseconds */
+	private final LongAdder worktime;
+
+	/**
+	 * Creates a new miner that uses all available processors
+	 */
+	public AdventCoinMiner( ) {
+		this( Runtime.getRuntime( ).availableProcessors( ) );
+	}
+
+	/**
+	 * Creates a new miner
+	 *
+	 * @param threads The number of worker threads to use
+	 */
+	public AdventCoinMiner( final int threads ) {
+		if( threads < 1 ) throw new IllegalArgumentException( "Invalid number of threads: " + threads );
+
+		this.pool = new ForkJoinPool( threads );
+		this.hashes = new LongAdder( );
+		this.worktime = new LongAdder( );
+	}
+
+	/**
+	 * Finds the smallest nonce that, appended to the key, generates an MD5 hash
+	 * that starts with the specified (hexadecimal) prefix
+	 *
+	 * @param key The private key
+	 * @param prefix The hexadecimal prefix that the hash needs to start with
+	 * @return The smallest nonce that generates a valid hash
+	 */
+	public long mine( final String key, final String prefix ) {
+		final byte[] keybytes = key.getBytes( StandardCharsets.US_ASCII );
+		final int[] nibbles = parsePrefix( prefix );
+
+		// mine in rounds of a few blocks per thread so that we can stop early
+		final int blocks = pool.getParallelism( ) * 4;
+		for( long base = 0; base < MAX_NONCE; base += (long)blocks * BLOCK_SIZE ) {
+			final AtomicLong best = new AtomicLong( Long.MAX_VALUE );
+			final List<ForkJoinTask<Long>> tasks = new ArrayList<>( blocks );
+			for( int b = 0; b < blocks; b++ ) {
+				final long start = base + (long)b * BLOCK_SIZE;
+				tasks.add( pool.submit( new MineTask( keybytes, nibbles, start, Math.min( start + BLOCK_SIZE, MAX_NONCE ), best ) ) );
+			}
+
+			// wait for the entire round to complete, the best value is then final
+			for( final ForkJoinTask<Long> t : tasks ) t.join( );
+			if( best.get( ) != Long.MAX_VALUE ) return best.get( );
+		}
+
+		throw new RuntimeException( "Failed to produce valid AdventCoin hash" );
+	}
+
+	/**
+	 * Shuts down the worker pool of this miner
+	 */
+	public void shutdown( ) {
+		pool.shutdown( );
+	}
+
+	/** @return The number of worker threads */
+	public int getThreads( ) {
+		return pool.getParallelism( );
+	}
+
+	/** @return The total number of hashes computed by this miner */
+	public long getHashCount( ) {
+		return hashes.sum( );
+	}
+
+	/**
+	 * Determines the average throughput of a single worker thread, useful to
+	 * determine the optimal pool size
+	 *
+	 * @return The number of hashes per second per thread
+	 */
+	public double getHashRatePerThread( ) {
+		final long nanos = worktime.sum( );
+		if( nanos == 0 ) return 0;
+		return hashes.sum( ) / (nanos / 1000000000.0);
+	}
+
+	/**
+	 * Converts the hexadecimal prefix into an array of nibble values
+	 *
+	 * @param prefix The prefix string
+	 * @return The array of nibble values
+	 */
+	private static int[] parsePrefix( final String prefix ) {
+		final int[] nibbles = new int[ prefix.length( ) ];
+		for( int i = 0; i < nibbles.length; i++ ) {
+			nibbles[i] = Character.digit( prefix.charAt( i ), 16 );
+			if( nibbles[i] < 0 ) throw new IllegalArgumentException( "Invalid hash prefix: " + prefix );
+		}
+		return nibbles;
+	}
+
+	/**
+	 * The per-thread mining state, i.e. the digest and buffers that are reused
+	 * for all nonces mined by the thread
+	 */
+	private static class Worker {
+		/** The MD5 digest of this worker */
+		private final MessageDigest md5;
+
+		/** The digest output buffer */
+		private final byte[] digest;
+
+		/** The input buffer that holds the key followed by the nonce digits */
+		private byte[] input;
+
+		/** The key that is currently in the input buffer */
+		private byte[] key;
+
+		/** The length of the current input */
+		private int length;
+
+		/** The per-thread worker states */
+		private static final ThreadLocal<Worker> workers = ThreadLocal.withInitial( Worker::new );
+
+		/**
+		 * Creates a new worker state
+		 */
+		private Worker( ) {
+			try {
+				md5 = MessageDigest.getInstance( "MD5" );
+			} catch( NoSuchAlgorithmException e ) {
+				throw new RuntimeException( "MD5 is not supported", e );
+			}
+			digest = new byte[ 16 ];
+		}
+
+		/**
+		 * Prepares the input buffer so that it contains the key, followed by the
+		 * digits of the specified nonce
+		 *
+		 * @param keybytes The key
+		 * @param nonce The nonce
+		 */
+		private void reset( final byte[] keybytes, final long nonce ) {
+			if( key != keybytes ) {
+				key = keybytes;
+				input = new byte[ keybytes.length + 20 ];
+				System.arraycopy( keybytes, 0, input, 0, keybytes.length );
+			}
+
+			// write the nonce digits
+			int digits = 1;
+			for( long n = nonce / 10; n > 0; n /= 10 ) digits++;
+			length = key.length + digits;
+			long n = nonce;
+			for( int i = length - 1; i >= key.length; i-- ) {
+				input[i] = (byte)('0' + (n % 10));
+				n /= 10;
+			}
+		}
+
+		/**
+		 * Increments the nonce digits in the buffer by one
+		 */
+		private void increment( ) {
+			for( int i = length - 1; i >= key.length; i-- ) {
+				if( input[i] != '9' ) {
+					input[i]++;
+					return;
+				}
+				input[i] = '0';
+			}
+
+			// all digits overflowed, add a leading one
+			input[ key.length ] = '1';
+			input[ length++ ] = '0';
+		}
+
+		/**
+		 * Hashes the current input and checks the digest against the prefix
+		 *
+		 * @param nibbles The prefix nibbles
+		 * @return True iff the digest starts with the prefix
+		 */
+		private boolean matches( final int[] nibbles ) {
+			md5.update( input, 0, length );
+			try {
+				md5.digest( digest, 0, digest.length );
+			} catch( DigestException e ) {
+				throw new RuntimeException( "Failed to compute digest", e );
+			}
+
+			for( int i = 0; i < nibbles.length; i++ ) {
+				final int b = digest[ i >> 1 ];
+				final int nib = (i & 1) == 0 ? (b >> 4) & 0xF : b & 0xF;
+				if( nib != nibbles[i] ) return false;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Task that mines a single block of nonces
+	 */
+	private class MineTask implements Callable<Long> {
+		/** The key bytes */
+		private final byte[] key;
+
+		/** The prefix nibbles */
+		private final int[] nibbles;
+
+		/** The first nonce of the block */
+		private final long start;
+
+		/** The end of the block (exclusive) */
+		private final long end;
+
+		/** The best nonce found so far in this round */
+		private final AtomicLong best;
+
+		/**
+		 * Creates a new mining task
+		 *
+		 * @param key The key bytes
+		 * @param nibbles The prefix to match
+		 * @param start The first nonce to try
+		 * @param end The end of the nonce range (exclusive)
+		 * @param best The best nonce found in the current round
+		 */
+		private MineTask( final byte[] key, final int[] nibbles, final long start, final long end, final AtomicLong best ) {
+			this.key = key;
+			this.nibbles = nibbles;
+			this.start = start;
+			this.end = end;
+			this.best = best;
+		}
+
+		/**
+		 * Mines the block and registers the first valid nonce, if any
+		 *
+		 * @return The smallest valid nonce in the block, -1 if there is none
+		 */
+		@Override
+		public Long call( ) {
+			// no need to mine if a smaller nonce is already found
+			if( best.get( ) < start ) return -1l;
+
+			final Worker w = Worker.workers.get( );
+			final long t0 = System.nanoTime( );
+			w.reset( key, start );
+			long result = -1;
+			long n = start;
+			for( ; n < end; n++ ) {
+				if( w.matches( nibbles ) ) {
+					result = n;
+					best.accumulateAndGet( n, Math::min );
+					break;
+				}
+				w.increment( );
+			}
+
+			hashes.add( Math.min( n + 1, end ) - start );
+			worktime.add( System.nanoTime( ) - t0 );
+			return result;
+		}
+	}
+}
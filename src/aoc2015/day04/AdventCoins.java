@@ -1,8 +1,15 @@
 package aoc2015.day04;
 
-import aocutil.Util;
-
 public class AdventCoins {
+	/** The miner that is used to search for valid hashes */
+	private final AdventCoinMiner miner;
+	
+	/**
+	 * Creates a new AdventCoins generator that mines on all available processors
+	 */
+	public AdventCoins( ) {
+		this.miner = new AdventCoinMiner( );
+	}
 	
 	/**
 	 * Finds the smallest advent coin hash number that, together with the keym
@@ -13,11 +20,11 @@ public class AdventCoins {
 	 * @return The hashed coin
 	 */
 	public long getSmallestHashNumber( final String key, final String prefix ) {
-		for( long i = 0; i < 1000000000l; i++ ) {
-			final String hash = Util.MD5( key + i );
-			if( hash.startsWith( prefix ) ) return i;
-		}
-		
-		throw new RuntimeException( "Failed to produce valid AdventCoin hash" );
+		return miner.mine( key, prefix );
+	}
+	
+	/** @return The miner used by this generator */
+	public AdventCoinMiner getMiner( ) {
+		return miner;
 	}
 }
@@ -36,6 +36,11 @@ public class Day04 {
 	 */
 	private static long generateHash( final String input, final String prefix ) {
 		final AdventCoins coins = new AdventCoins( );		
-		return coins.getSmallestHashNumber( input, prefix );
+		final long hash = coins.getSmallestHashNumber( input, prefix );
+		
+		final AdventCoinMiner miner = coins.getMiner( );
+		System.out.println( String.format( "(mined %d hashes at %.0f hashes/s per thread, %d threads)", miner.getHashCount( ), miner.getHashRatePerThread( ), miner.getThreads( ) ) );
+		miner.shutdown( );
+		return hash;
 	}
 }
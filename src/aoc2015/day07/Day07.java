@@ -1,10 +1,10 @@
 package aoc2015.day07;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 import aoc2015.day07.circuit.Circuit;
+import aoc2015.day07.circuit.CompiledCircuit;
 import aoc2015.day07.circuit.Wire;
 import aocutil.io.FileReader;
 
@@ -60,27 +60,18 @@ public class Day07 {
 	/**
 	 * Parses the gate descriptions and runs the circuit logic twice. The first
 	 * run will determine the signal value on wire "a", the second run will use
-	 * that value as input for wire "b" and rerun the circuit to once more
+	 * that value as input for wire "b" and re-evaluates the circuit to once more
 	 * determine the value for wire "a".
 	 * 
 	 * @param input The list of gate descriptions 
 	 * @return The signal value on wire "a" after the circuit has ran twice
 	 */
 	private static int part2( final List<String> input ) {
-		// get the answer of part1 and override the signal for wire b with it
-		final int signal = part1( input );
+		final CompiledCircuit c = Circuit.fromStringList( input ).compile( );
+		c.run( );
 		
-		// overwrite the description of gate b
-		final List<String> newinput = new ArrayList<>( );
-		for( final String s : input ) {
-			if( s.endsWith( "-> b" ) )
-				newinput.add( signal + " -> b" );
-			else newinput.add( s );
-		}
-		
-		// and run the updated circuit
-		final Circuit c = Circuit.fromStringList( newinput );
-		final Map<Wire, Integer> result = c.run( );
-		return result.getOrDefault( Wire.fromString( "a" ), -1 );
+		// override the signal for wire b with that of a, only its cone is updated
+		c.override( "b", c.getSignal( "a" ) );
+		return c.getSignal( "a" );
 	}
 }
@@ -1,7 +1,5 @@
 package aoc2015.day07.circuit;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -29,17 +27,19 @@ public class Circuit {
 	 * @return The signals that are on the wires
 	 */
 	public Map<Wire, Integer> run( ) {
-		// create map of wires to hold current signal values
-		final Map<Wire, Integer> wires = new HashMap<>( );
-		
-		// process all instructions
-		final List<LogicGate> remaining = new ArrayList<>( gates );
-		while( remaining.size( ) > 0 ) {
-			final LogicGate gate = remaining.remove( 0 );
-			if( !gate.process( wires ) ) remaining.add( gate );
-		}
-		
-		return wires;
+		final CompiledCircuit program = compile( );
+		program.run( );
+		return program.getSignals( );
+	}
+	
+	/**
+	 * Compiles the circuit board into a topologically ordered program that can
+	 * be evaluated in a single pass
+	 * 
+	 * @return The compiled circuit
+	 */
+	public CompiledCircuit compile( ) {
+		return new CompiledCircuit( gates );
 	}
 
 	/** 
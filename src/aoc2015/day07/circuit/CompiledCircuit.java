@@ -0,0 +1,243 @@
+package aoc2015.day07.circuit;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A circuit that is compiled into a topologically ordered program of gates
+ * over array indexed wire slots. A full evaluation of the circuit is therefore
+ * a single linear pass over the program. Wire signals can be overridden after
+ * which only the gates downstream of that wire are re-evaluated.
+ *
+ * @author Joris
+ */
+public class CompiledCircuit {
+	/** The mapping of wire labels to their slot */
+	private final Map<String, Integer> slots;
+
+	/** The labels of the wires per slot */
+	private final String[] labels;
+
+	/** The operations of the program, in topological order */
+	private final LogicGate.Op[] ops;
+
+	/** The output slot of every instruction */
+	private final int[] out;
+
+	/** The input operands of every instruction, a slot or a literal */
+	private final int[] in1, in2;
+
+	/** True if the corresponding operand is a literal value */
+	private final boolean[] lit1, lit2;
+
+	/** The instructions that consume each slot, in compressed row format */
+	private final int[] consumerstart, consumers;
+
+	/** The current signal values per slot */
+	private final int[] signals;
+
+	/** Overridden slots that no longer take their signal from their gate */
+	private final boolean[] overridden;
+
+	/**
+	 * Compiles the list of logical gates into a program
+	 *
+	 * @param gates The gates of the circuit
+	 */
+	protected CompiledCircuit( final List<LogicGate> gates ) {
+		final int N = gates.size( );
+
+		// intern all wire labels
+		slots = new HashMap<>( N * 2 );
+		for( final LogicGate g : gates ) intern( g.getOutput( ) );
+		for( final LogicGate g : gates )
+			for( final Wire w : g.getInputs( ) ) intern( w );
+		final int W = slots.size( );
+		labels = new String[ W ];
+		for( final Map.Entry<String, Integer> e : slots.entrySet( ) ) labels[ e.getValue( ) ] = e.getKey( );
+
+		// determine the gate that drives every wire
+		final int[] gatedriver = new int[ W ];
+		Arrays.fill( gatedriver, -1 );
+		for( int i = 0; i < N; i++ ) {
+			final int o = slots.get( gates.get( i ).getOutput( ).toString( ) );
+			if( gatedriver[ o ] != -1 ) throw new RuntimeException( "Wire " + labels[ o ] + " is driven by multiple gates" );
+			gatedriver[ o ] = i;
+		}
+
+		// count the unresolved inputs of every gate and build the gate consumer lists
+		final int[] pending = new int[ N ];
+		final int[] fanout = new int[ W + 1 ];
+		for( int i = 0; i < N; i++ )
+			for( final Wire w : gates.get( i ).getInputs( ) ) {
+				if( w.isLiteral( ) ) continue;
+				final int s = slots.get( w.toString( ) );
+				if( gatedriver[ s ] == -1 ) throw new RuntimeException( "Wire " + w + " is not driven by any gate" );
+				pending[ i ]++;
+				fanout[ s + 1 ]++;
+			}
+		for( int s = 0; s < W; s++ ) fanout[ s + 1 ] += fanout[ s ];
+		final int[] gateconsumers = new int[ fanout[ W ] ];
+		final int[] fill = Arrays.copyOf( fanout, W );
+		for( int i = 0; i < N; i++ )
+			for( final Wire w : gates.get( i ).getInputs( ) )
+				if( !w.isLiteral( ) ) gateconsumers[ fill[ slots.get( w.toString( ) ) ]++ ] = i;
+
+		// sort the gates topologically using Kahn's algorithm
+		final int[] order = new int[ N ];
+		int head = 0, tail = 0;
+		for( int i = 0; i < N; i++ ) if( pending[ i ] == 0 ) order[ tail++ ] = i;
+		while( head < tail ) {
+			final int g = order[ head++ ];
+			final int o = slots.get( gates.get( g ).getOutput( ).toString( ) );
+			for( int c = fanout[ o ]; c < fanout[ o + 1 ]; c++ )
+				if( --pending[ gateconsumers[ c ] ] == 0 ) order[ tail++ ] = gateconsumers[ c ];
+		}
+		if( tail != N ) throw new RuntimeException( "Circuit contains a feedback loop" );
+
+		// and compile the ordered gates into the program
+		ops = new LogicGate.Op[ N ];
+		out = new int[ N ];
+		in1 = new int[ N ]; in2 = new int[ N ];
+		lit1 = new boolean[ N ]; lit2 = new boolean[ N ];
+		final int[] position = new int[ N ];
+		for( int i = 0; i < N; i++ ) {
+			final LogicGate g = gates.get( order[ i ] );
+			position[ order[ i ] ] = i;
+			ops[ i ] = g.getOp( );
+			out[ i ] = slots.get( g.getOutput( ).toString( ) );
+
+			final Wire[] inputs = g.getInputs( );
+			lit1[ i ] = inputs[0].isLiteral( );
+			in1[ i ] = lit1[ i ] ? inputs[0].value : slots.get( inputs[0].toString( ) );
+			if( inputs.length > 1 ) {
+				lit2[ i ] = inputs[1].isLiteral( );
+				in2[ i ] = lit2[ i ] ? inputs[1].value : slots.get( inputs[1].toString( ) );
+			}
+		}
+
+		// remap the consumer lists to program positions
+		consumerstart = fanout;
+		consumers = new int[ gateconsumers.length ];
+		for( int c = 0; c < consumers.length; c++ ) consumers[ c ] = position[ gateconsumers[ c ] ];
+
+		signals = new int[ W ];
+		overridden = new boolean[ W ];
+	}
+
+	/**
+	 * Interns the wire label, if it is not a literal
+	 *
+	 * @param wire The wire
+	 */
+	private void intern( final Wire wire ) {
+		if( !wire.isLiteral( ) ) slots.putIfAbsent( wire.toString( ), slots.size( ) );
+	}
+
+	/**
+	 * Evaluates the entire circuit in a single pass over the program
+	 */
+	public void run( ) {
+		for( int i = 0; i < ops.length; i++ )
+			if( !overridden[ out[ i ] ] ) signals[ out[ i ] ] = evaluate( i );
+	}
+
+	/**
+	 * Overrides the signal on a wire and re-evaluates only the gates that
+	 * (indirectly) depend on that wire. Requires the circuit to have been
+	 * evaluated before.
+	 *
+	 * @param wire The label of the wire to override
+	 * @param value The new signal value of the wire
+	 */
+	public void override( final String wire, final int value ) {
+		final int slot = getSlot( wire );
+		overridden[ slot ] = true;
+		signals[ slot ] = value;
+
+		// determine the downstream cone of gates
+		final boolean[] incone = new boolean[ ops.length ];
+		int[] cone = new int[ 16 ];
+		int size = 0;
+		final int[] stack = new int[ ops.length ];
+		int sp = 0;
+		for( int c = consumerstart[ slot ]; c < consumerstart[ slot + 1 ]; c++ )
+			if( !incone[ consumers[ c ] ] ) { incone[ consumers[ c ] ] = true; stack[ sp++ ] = consumers[ c ]; }
+		while( sp > 0 ) {
+			final int g = stack[ --sp ];
+			if( size == cone.length ) cone = Arrays.copyOf( cone, size * 2 );
+			cone[ size++ ] = g;
+
+			final int o = out[ g ];
+			if( overridden[ o ] ) continue;
+			for( int c = consumerstart[ o ]; c < consumerstart[ o + 1 ]; c++ )
+				if( !incone[ consumers[ c ] ] ) { incone[ consumers[ c ] ] = true; stack[ sp++ ] = consumers[ c ]; }
+		}
+
+		// the program is ordered topologically, so evaluating the cone in program
+		// order guarantees all inputs are up to date
+		Arrays.sort( cone, 0, size );
+		for( int i = 0; i < size; i++ ) {
+			final int g = cone[ i ];
+			if( !overridden[ out[ g ] ] ) signals[ out[ g ] ] = evaluate( g );
+		}
+	}
+
+	/**
+	 * Evaluates a single instruction
+	 *
+	 * @param i The instruction index
+	 * @return The resulting signal value
+	 */
+	private int evaluate( final int i ) {
+		final int a = lit1[ i ] ? in1[ i ] : signals[ in1[ i ] ];
+		final int b = lit2[ i ] ? in2[ i ] : signals[ in2[ i ] ];
+		switch( ops[ i ] ) {
+			case Set: return a;
+			case And: return a & b;
+			case Or:  return a | b;
+			case Not:	return 65535 - a;
+			case LShift: return a << b;
+			case RShift: return a >> b;
+
+			default: throw new RuntimeException( "Gate logic not implemented: " + ops[ i ] );
+		}
+	}
+
+	/**
+	 * Returns the current signal on a wire
+	 *
+	 * @param wire The wire label
+	 * @return The signal value
+	 */
+	public int getSignal( final String wire ) {
+		return signals[ getSlot( wire ) ];
+	}
+
+	/**
+	 * Looks up the slot of the wire
+	 *
+	 * @param wire The wire label
+	 * @return The slot index
+	 */
+	private int getSlot( final String wire ) {
+		final Integer slot = slots.get( wire );
+		if( slot == null ) throw new RuntimeException( "Unknown wire: " + wire );
+		return slot;
+	}
+
+	/** @return The current signals on all wires */
+	public Map<Wire, Integer> getSignals( ) {
+		final Map<Wire, Integer> wires = new HashMap<>( labels.length * 2 );
+		for( int s = 0; s < labels.length; s++ )
+			wires.put( Wire.fromString( labels[ s ] ), signals[ s ] );
+		return wires;
+	}
+
+	/** @return The number of instructions in the program */
+	public int size( ) {
+		return ops.length;
+	}
+}
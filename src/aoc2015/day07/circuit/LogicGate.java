@@ -20,7 +20,7 @@ public class LogicGate {
 	private final Op op;
 
 	/** The possible operations of this gate */
-	private enum Op {
+	enum Op {
 		Set,
 		And,
 		Or,
@@ -89,6 +89,15 @@ public class LogicGate {
 		return true;
 	}
 	
+	/** @return The output wire of the gate */
+	protected Wire getOutput( ) { return output; }
+	
+	/** @return The input wires of the gate */
+	protected Wire[] getInputs( ) { return inputs; }
+	
+	/** @return The logical operation of the gate */
+	protected Op getOp( ) { return op; }
+	
 	/**
 	 * Constructs the gate from a string description
 	 * 
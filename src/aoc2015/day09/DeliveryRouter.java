@@ -6,7 +6,7 @@ import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import aocutil.collections.CollectionUtil;
+import aoc2015.tsp.HeldKarpSolver;
 
 /**
  * Class that helps Santa optimise his delivery route
@@ -58,23 +58,7 @@ public class DeliveryRouter {
 	 * @return The shortest route as a string city1 -> city2 -> ... = distance
 	 */
 	public String getShortestRoute( ) {
-		// get all permutations of cities
-		final List<List<String>> routes = CollectionUtil.generatePermutations( citymap.keySet( ) );
-		
-		// find the permutation that hasthe longest route length
-		List<String> bestroute = null;
-		int mindist = Integer.MAX_VALUE;
-		for( final List<String> route : routes ) {
-			// compute distance of route
-			final int dist = dist( route );
-			if( dist < mindist ) {
-				mindist = dist;
-				bestroute = route;
-			}
-		}
-
-		// return it as a string with its distance
-		return bestroute.stream( ).reduce(  "", (x,y) -> x + " -> " + y ).substring( 4 ) + ": " + mindist;
+		return routeString( new HeldKarpSolver( D, false ).solvePath( ) );
 	}
 	
 	/**
@@ -83,23 +67,22 @@ public class DeliveryRouter {
 	 * @return The longest route as a string city1 -> city2 -> ... = distance
 	 */
 	public String getLongestRoute( ) {
-		// get all permutations of cities
-		final List<List<String>> routes = CollectionUtil.generatePermutations( citymap.keySet( ) );
-		
-		// find the permutation that has the longest route length
-		List<String> bestroute = null;
-		int maxdist = 0;
-		for( final List<String> route : routes ) {
-			// compute distance of route
-			final int dist = dist( route );
-			if( dist > maxdist ) {
-				maxdist = dist;
-				bestroute = route;
-			}
-		}
+		return routeString( new HeldKarpSolver( D, true ).solvePath( ) );
+	}
+	
+	/**
+	 * Converts a solver route into a string of city names
+	 * 
+	 * @param route The route over city indices
+	 * @return The route as a string city1 -> city2 -> ... = distance
+	 */
+	private String routeString( final HeldKarpSolver.Route route ) {
+		final String[] cities = new String[ citymap.size( ) ];
+		for( final Map.Entry<String, Integer> e : citymap.entrySet( ) ) cities[ e.getValue( ) ] = e.getKey( );
 		
-		// return it as a string with its distance
-		return bestroute.stream( ).reduce(  "", (x,y) -> x + " -> " + y ).substring( 4 ) + ": " + maxdist;
+		final StringBuilder res = new StringBuilder( );
+		for( final int c : route.getOrder( ) ) res.append( " -> " + cities[ c ] );
+		return res.substring( 4 ) + ": " + route.score;
 	}
 	
 	
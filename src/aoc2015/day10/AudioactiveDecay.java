@@ -0,0 +1,167 @@
+package aoc2015.day10;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes the length of LookAndSay sequences without materialising them,
+ * using Conway's observation that sequences split into "elements" that evolve
+ * independently of each other. The sequence is represented as a count per
+ * element, hence a round costs time linear in the number of distinct elements
+ * (92 for common inputs) rather than in the length of the sequence.
+ *
+ * Elements are discovered on the fly. A sequence LR can be split into L and R
+ * iff the last digit of L never equals the first digit of R in any of the
+ * future rounds. Every round L still ends with its own last digit and R
+ * starts with the length of its previous first run, hence the split can be
+ * tested by evolving only a short prefix of R.
+ *
+ * @author Joris
+ */
+public class AudioactiveDecay {
+	/** The maximal prefix length of R that is evolved to test a split */
+	private static final int PREFIX = 64;
+
+	/** The number of rounds a split is tested for */
+	private static final int SPLIT_ROUNDS = 32;
+
+	/** The element strings mapped to their index */
+	private final Map<String, Integer> elementmap;
+
+	/** The list of known elements */
+	private final List<String> elements;
+
+	/** The elements every element decays into, computed lazily */
+	private final List<int[]> decays;
+
+	/**
+	 * Creates a new decay engine
+	 */
+	public AudioactiveDecay( ) {
+		elementmap = new HashMap<>( );
+		elements = new ArrayList<>( );
+		decays = new ArrayList<>( );
+	}
+
+	/**
+	 * Computes the length of the sequence after the given number of rounds
+	 *
+	 * @param rounds The number of rounds
+	 * @param initial The initial sequence
+	 * @return The length of the sequence after the rounds
+	 * @throws ArithmeticException if the length exceeds the range of a long
+	 */
+	public long getLength( final int rounds, final String initial ) {
+		final int[] parts = split( initial );
+		long[] counts = new long[ Math.max( 128, elements.size( ) ) ];
+		for( final int e : parts ) counts[ e ]++;
+
+		for( int r = 0; r < rounds; r++ ) {
+			// decay every element that is present, new elements may be discovered
+			final int known = elements.size( );
+			long[] next = new long[ Math.max( counts.length, known ) ];
+			for( int e = 0; e < Math.min( known, counts.length ); e++ ) {
+				if( counts[ e ] == 0 ) continue;
+				for( final int d : getDecay( e ) ) {
+					if( d >= next.length ) next = Arrays.copyOf( next, Math.max( d + 1, next.length * 2 ) );
+					next[ d ] = Math.addExact( next[ d ], counts[ e ] );
+				}
+			}
+			counts = next;
+		}
+
+		long length = 0;
+		for( int e = 0; e < counts.length; e++ )
+			if( counts[ e ] > 0 ) length = Math.addExact( length, Math.multiplyExact( counts[ e ], elements.get( e ).length( ) ) );
+		return length;
+	}
+
+	/** @return The number of distinct elements discovered so far */
+	public int getElementCount( ) {
+		return elements.size( );
+	}
+
+	/**
+	 * Returns the elements that the given element decays into after one round
+	 *
+	 * @param element The element index
+	 * @return The indices of the resulting elements
+	 */
+	private int[] getDecay( final int element ) {
+		int[] decay = decays.get( element );
+		if( decay == null ) {
+			decay = split( LookAndSay.lookAndSay( elements.get( element ) ) );
+			decays.set( element, decay );
+		}
+		return decay;
+	}
+
+	/**
+	 * Splits a sequence into its elements
+	 *
+	 * @param seq The sequence to split
+	 * @return The indices of its elements, in order
+	 */
+	private int[] split( final String seq ) {
+		final List<Integer> parts = new ArrayList<>( );
+		int start = 0;
+		for( int i = 1; i < seq.length( ); i++ ) {
+			if( canSplit( seq.charAt( i - 1 ), seq, i ) ) {
+				parts.add( intern( seq.substring( start, i ) ) );
+				start = i;
+			}
+		}
+		parts.add( intern( seq.substring( start ) ) );
+
+		return parts.stream( ).mapToInt( Integer::intValue ).toArray( );
+	}
+
+	/**
+	 * Tests whether the sequence can be split before the given position
+	 *
+	 * @param last The last digit of the left part
+	 * @param seq The sequence
+	 * @param pos The position of the split, i.e. the start of the right part
+	 * @return True iff the left and right parts evolve independently
+	 */
+	private static boolean canSplit( final char last, final String seq, final int pos ) {
+		// evolve a prefix of R, if it was truncated the final run may be
+		// incomplete and the last two digits of every round are unreliable.
+		// If no reliable digits remain before all rounds have been checked, the
+		// split cannot be verified
+		final int end = Math.min( seq.length( ), pos + PREFIX );
+		boolean exact = end == seq.length( );
+		String R = seq.substring( pos, end );
+		for( int r = 0; r <= SPLIT_ROUNDS; r++ ) {
+			if( R.length( ) == 0 ) return false;
+			if( R.charAt( 0 ) == last ) return false;
+
+			R = LookAndSay.lookAndSay( R );
+			if( !exact ) R = R.substring( 0, Math.max( 0, R.length( ) - 2 ) );
+			if( R.length( ) > PREFIX ) {
+				R = R.substring( 0, PREFIX );
+				exact = false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Looks up the element index of the string, registers it if it is new
+	 *
+	 * @param element The element string
+	 * @return The element index
+	 */
+	private int intern( final String element ) {
+		final Integer idx = elementmap.get( element );
+		if( idx != null ) return idx;
+
+		elementmap.put( element, elements.size( ) );
+		elements.add( element );
+		decays.add( null );
+		return elements.size( ) - 1;
+	}
+}
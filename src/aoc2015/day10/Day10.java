@@ -21,7 +21,7 @@ public class Day10 {
 		System.out.println( "Answer : " + part1( input, 40 ) );
 
 		System.out.println( "\n---[ Part 2 ]---" );
-		System.out.println( "Answer : " + part1( input, 50 ) );
+		System.out.println( "Answer : " + part2( input, 50 ) );
 	}
 	
 	/**
@@ -35,4 +35,17 @@ public class Day10 {
 		final LookAndSay ls = new LookAndSay( );
 		return ls.play( rounds, "" + input ).length( );
 	}
+	
+	/**
+	 * Determines the length of the LookAndSay string after the specified number
+	 * of rounds without playing out the full string
+	 * 
+	 * @param input The starting input for the game
+	 * @param rounds The number of rounds to play
+	 * @return The length of the string that results after playing the rounds
+	 */
+	private static long part2( final int input, final int rounds ) {
+		final LookAndSay ls = new LookAndSay( );
+		return ls.getLength( rounds, "" + input );
+	}
 }
@@ -1,5 +1,7 @@
 package aoc2015.day10;
 
+import java.nio.charset.StandardCharsets;
+
 /**
  * Class that models the game of LookAndSay in which players call out numbers
  * as n times m that are to be written down by the other player. Here, n is the
@@ -11,17 +13,40 @@ package aoc2015.day10;
 public class LookAndSay {
 
 	/**
-	 * Plays the game oF LookAndSay for the specified number of rounds
+	 * Plays the game oF LookAndSay for the specified number of rounds. The
+	 * rounds are played on two byte buffers that are swapped every round, use
+	 * getLength for large numbers of rounds 
 	 * 
 	 * @param rounds The number of rounds to play
 	 * @param initial The starting string
 	 * @return The string that results when the game finishes 
 	 */
 	public String play( final int rounds, final String initial ) {
-		String res = "" + initial;
-		for( int i = 0; i < rounds; i++ )
-			res = playRound( res );
-		return res;
+		byte[] in = initial.getBytes( StandardCharsets.US_ASCII );
+		byte[] out = new byte[ 2 * in.length ];
+		int len = in.length;
+		for( int i = 0; i < rounds; i++ ) {
+			// a round at most doubles the length of the sequence
+			if( out.length < 2 * len ) out = new byte[ 4 * len ];
+			len = playRound( in, len, out );
+			
+			final byte[] tmp = in;
+			in = out;
+			out = tmp;
+		}
+		return new String( in, 0, len, StandardCharsets.US_ASCII );
+	}
+	
+	/**
+	 * Determines the length of the string after playing the specified number
+	 * of rounds, without constructing the string itself
+	 * 
+	 * @param rounds The number of rounds to play
+	 * @param initial The starting string
+	 * @return The length of the string that results when the game finishes
+	 */
+	public long getLength( final int rounds, final String initial ) {
+		return new AudioactiveDecay( ).getLength( rounds, initial );
 	}
 	
 	/**
@@ -31,19 +56,43 @@ public class LookAndSay {
 	 * @return The string that results after a single round
 	 */
 	public String playRound( final String input ) {
-		final StringBuilder res = new StringBuilder( );
+		return lookAndSay( input );
+	}
+	
+	/**
+	 * Plays a single round of LookAndSay
+	 * 
+	 * @param input The input string
+	 * @return The string that results after a single round
+	 */
+	protected static String lookAndSay( final String input ) {
+		final byte[] in = input.getBytes( StandardCharsets.US_ASCII );
+		final byte[] out = new byte[ 2 * in.length ];
+		return new String( out, 0, playRound( in, in.length, out ), StandardCharsets.US_ASCII );
+	}
+	
+	/**
+	 * Plays a single round of LookAndSay from one buffer into another
+	 * 
+	 * @param input The buffer that holds the input sequence
+	 * @param length The length of the input sequence
+	 * @param output The output buffer, must be able to hold 2 * length bytes 
+	 * @return The length of the resulting sequence
+	 */
+	private static int playRound( final byte[] input, final int length, final byte[] output ) {
+		int outlen = 0;
+		if( length == 0 ) return outlen;
 		
 		// go over the string and treat the groups of equal numbers
-		char grpchar = input.charAt( 0 );
+		byte grpchar = input[0];
 		int count = 1;
-		for( int i = 1; i < input.length( ); i++ ) {
-			final char curr = input.charAt( i );
+		for( int i = 1; i < length; i++ ) {
+			final byte curr = input[i];
 			
 			// create new group?
 			if( curr != grpchar ) {
 				// yes, process previous group and continue
-				res.append( count );
-				res.append( grpchar );
+				outlen = writeGroup( output, outlen, count, grpchar );
 				grpchar = curr;
 				count = 1;
 			} else {
@@ -52,10 +101,27 @@ public class LookAndSay {
 			}
 		}
 		
-		// process last group and continue
-		res.append( count );
-		res.append( grpchar );
-
-		return res.toString( );
+		// process last group
+		return writeGroup( output, outlen, count, grpchar );
+	}
+	
+	/**
+	 * Writes the count and character of a group to the output buffer
+	 * 
+	 * @param output The output buffer
+	 * @param offset The offset to write at
+	 * @param count The number of characters in the group
+	 * @param c The group character
+	 * @return The new offset in the output buffer
+	 */
+	private static int writeGroup( final byte[] output, final int offset, final int count, final byte c ) {
+		int pos = offset;
+		if( count < 10 ) {
+			output[ pos++ ] = (byte)('0' + count);
+		} else {
+			for( final byte b : Integer.toString( count ).getBytes( StandardCharsets.US_ASCII ) ) output[ pos++ ] = b;
+		}
+		output[ pos++ ] = c;
+		return pos;
 	}
 }
@@ -1,5 +1,9 @@
 package aoc2015.day11;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
 /**
  * Class to generate a new password from an existing one such that it is the
  * next one that adheres to all the password policy rules
@@ -7,6 +11,11 @@ package aoc2015.day11;
  * @author Joris
  */
 public class PasswordGenerator {
+	/** Lookup table of the characters that are not allowed in a password */
+	private static final boolean[] FORBIDDEN = new boolean[ 26 ];
+	static {
+		for( final char c : new char[] { 'i', 'o', 'l' } ) FORBIDDEN[ c - 'a' ] = true;
+	}
 
 	/**
 	 * Generates the next valid password from a given current password
@@ -16,6 +25,132 @@ public class PasswordGenerator {
 	 *   minimal character increments from the current password
 	 */
 	public static String getNextPassword( final String current ) {
+		return getNextPassword( current, new long[ 1 ] );
+	}
+	
+	/**
+	 * Lazily generates the stream of valid passwords that follow the current
+	 * password
+	 * 
+	 * @param current The current password
+	 * @return The infinite stream of next valid passwords, in order
+	 */
+	public static Stream<String> getNextPasswords( final String current ) {
+		return Stream.iterate( getNextPassword( current ), PasswordGenerator::getNextPassword );
+	}
+	
+	/**
+	 * Generates the next valid password by jumping directly to the smallest
+	 * password that can still be completed into a valid one. Only prefixes
+	 * without forbidden characters are considered, and the remaining suffix is
+	 * filled greedily with the smallest characters that still allow the
+	 * straight and pair requirements to be met.
+	 * 
+	 * @param current The current password
+	 * @param examined Counter for the number of candidates examined
+	 * @return The next valid password
+	 */
+	private static String getNextPassword( final String current, final long[] examined ) {
+		final int[] pwd = current.chars( ).map( c -> c - 'a' ).toArray( );
+		final int N = pwd.length;
+		final Map<Long, Boolean> memo = new HashMap<>( );
+		
+		// determine the longest prefix that we can keep
+		int maxprefix = 0;
+		while( maxprefix < N - 1 && !FORBIDDEN[ pwd[ maxprefix ] ] ) maxprefix++;
+		
+		// find the rightmost position we can increment, such that the password
+		// can still be completed into a valid one
+		for( int p = maxprefix; p >= 0; p-- ) {
+			int state = 0;
+			for( int i = 0; i < p; i++ ) state = append( state, pwd[i] );
+			
+			for( int c = pwd[p] + 1; c < 26; c++ ) {
+				if( FORBIDDEN[ c ] ) continue;
+				examined[0]++;
+				
+				int s = append( state, c );
+				if( !isFeasible( s, N - p - 1, memo ) ) continue;
+				
+				// found it, fill the remainder with the smallest feasible characters
+				pwd[ p ] = c;
+				for( int q = p + 1; q < N; q++ ) {
+					for( int d = 0; d < 26; d++ ) {
+						if( FORBIDDEN[ d ] ) continue;
+						examined[0]++;
+						
+						final int s2 = append( s, d );
+						if( isFeasible( s2, N - q - 1, memo ) ) {
+							pwd[ q ] = d;
+							s = s2;
+							break;
+						}
+					}
+				}
+				
+				final StringBuilder sb = new StringBuilder( N );
+				for( final int x : pwd ) sb.append( (char)('a' + x) );
+				return sb.toString( );
+			}
+		}
+		
+		throw new RuntimeException( "Failed to generate next password" );
+	}
+	
+	/**
+	 * Determines whether a password prefix can still be completed into a valid
+	 * password
+	 * 
+	 * @param state The state of the prefix
+	 * @param remaining The number of characters that remain to be set
+	 * @param memo The memoised feasibility results
+	 * @return True iff some completion of the prefix is a valid password
+	 */
+	private static boolean isFeasible( final int state, final int remaining, final Map<Long, Boolean> memo ) {
+		if( remaining == 0 ) return (state & 0x200) != 0 && ((state >> 10) & 3) >= 2;
+
+		final long key = ((long)remaining << 32) | state;
+		final Boolean known = memo.get( key );
+		if( known != null ) return known;
+		
+		boolean feasible = false;
+		for( int c = 0; c < 26 && !feasible; c++ )
+			if( !FORBIDDEN[ c ] ) feasible = isFeasible( append( state, c ), remaining - 1, memo );
+		
+		memo.put( key, feasible );
+		return feasible;
+	}
+	
+	/**
+	 * Appends a character to the prefix state. The state is packed into an int
+	 * as: last character + 1 (bits 0-4), length of the increasing run ending in
+	 * the last character capped at 3 (bits 5-6), pairable flag of the last
+	 * character (bit 7), straight found (bit 9) and number of pairs capped at 2
+	 * (bits 10-11).
+	 * 
+	 * @param state The current prefix state
+	 * @param c The character to append (0-25)
+	 * @return The new prefix state
+	 */
+	private static int append( final int state, final int c ) {
+		final int last = (state & 0x1F) - 1;
+		final int run = (last >= 0 && c == last + 1) ? Math.min( ((state >> 5) & 3) + 1, 3 ) : 1;
+		final boolean straight = (state & 0x200) != 0 || run == 3;
+		final boolean pair = (state & 0x80) != 0 && c == last;
+		final int pairs = Math.min( ((state >> 10) & 3) + (pair ? 1 : 0), 2 );
+		
+		return (c + 1) | (run << 5) | (pair ? 0 : 0x80) | (straight ? 0x200 : 0) | (pairs << 10);
+	}
+	
+	/**
+	 * Generates the next valid password by incrementing the password one
+	 * character at a time and checking the validity of every candidate
+	 * 
+	 * @param current The current password
+	 * @param examined Counter for the number of candidates examined
+	 * @return The next valid password
+	 */
+	private static String getNextPasswordBruteForce( final String current, final long[] examined ) {
 		final char[] curr = current.toCharArray( );
 		
 		while( true ) {
@@ -29,10 +164,39 @@ public class PasswordGenerator {
 			}
 			
 			// check the validity of the password
+			examined[0]++;
 			if( isValid( curr ) ) return String.valueOf( curr );
 		}
 	}
 	
+	/**
+	 * Compares the number of candidates that are examined per valid password
+	 * by the brute-force approach and by the pruned generator
+	 * 
+	 * @param current The password to start from
+	 * @param K The number of next passwords to generate
+	 * @return A description of the candidates examined per password and the
+	 *   time taken by both approaches
+	 */
+	public static String benchmark( final String current, final int K ) {
+		final long[] brute = new long[ 1 ];
+		final long[] pruned = new long[ 1 ];
+		
+		String pwd = current;
+		long t0 = System.nanoTime( );
+		for( int k = 0; k < K; k++ ) pwd = getNextPasswordBruteForce( pwd, brute );
+		final long brutetime = System.nanoTime( ) - t0;
+		
+		String pwd2 = current;
+		t0 = System.nanoTime( );
+		for( int k = 0; k < K; k++ ) pwd2 = getNextPassword( pwd2, pruned );
+		final long prunedtime = System.nanoTime( ) - t0;
+		
+		if( !pwd.equals( pwd2 ) ) throw new RuntimeException( "Generators disagree: " + pwd + " vs " + pwd2 );
+		return String.format( "Brute-force: %.1f candidates/password (%d ms), pruned: %.1f candidates/password (%d ms)",
+				brute[0] / (double)K, brutetime / 1000000, pruned[0] / (double)K, prunedtime / 1000000 );
+	}
+	
 	/**
 	 * Checks if the password is valid, i.e. it meets the security criteria
 	 * 
@@ -43,14 +207,13 @@ public class PasswordGenerator {
 		// check all password requirements
 		// 1) passwords must contain at least one straight of increasing characters
 		boolean straight = false;
-		for( int i = 0; i < pwd.length - 3; i++ )
+		for( int i = 0; i < pwd.length - 2; i++ )
 			straight |= (pwd[i] == pwd[i+1] - 1 && pwd[i] == pwd[i+2] - 2);
 		if( !straight ) return false;
 		
 		// 2) they may not contain an i, o or l
-		final String forbidden = "iol"; 
-		for( int i = 0; i < pwd.length - 1; i++ )
-			if( forbidden.contains( "" + pwd[i] ) ) return false;
+		for( int i = 0; i < pwd.length; i++ )
+			if( FORBIDDEN[ pwd[i] - 'a' ] ) return false;
 		
 		// 3) they must contain at least 2 different, non-overlapping pairs
 		char prev = '-';
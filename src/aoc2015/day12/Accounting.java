@@ -1,5 +1,8 @@
 package aoc2015.day12;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -37,63 +40,23 @@ public class Accounting {
 	 * @return The sum over non-filtered numbers
 	 */
 	public static long sumNumbersFiltered( final String input, final String filtervalue ) {
-		// remove objects that contain a property with value "red"
-		String transformed = "" + input;
-		Matcher m = Pattern.compile( ":\"" + filtervalue + "\"" ).matcher( transformed );
-		while( m.find( ) ) {
-			// remove the whole object from the position of the found object 
-			// and rescan the resulting document
-			transformed = removeObject( transformed, m.start( 0 ) );			
-			m = Pattern.compile( ":\"red\"" ).matcher( transformed );
+		try {
+			return sumNumbersFiltered( new StringReader( input ), filtervalue );
+		} catch( IOException e ) {
+			throw new RuntimeException( "Failed to read JSON document", e );
 		}
-		
-		// now sum all numbers in the remaining string
-		return sumNumbers( transformed );
 	}
 	
 	/**
-	 * Removes the object from the input of which the definition contains the
-	 * specified index. That is, the index is somewhere between the start and
-	 * end index of the object in the input string
+	 * Sums over all the numbers in a JSON document in a single streaming pass,
+	 * filtering objects that have a property with the filter value
 	 * 
-	 * @param input The input string that contains the object
-	 * @param index The index at which the object is defined
-	 * @return The input string with the object removed. NOTE: the result is no
-	 *   longer a valid JSON. 
-	 */
-	private static String removeObject( final String input, final int index ) {
-		// finds the opening and closing brackets that enclose the object from the
-		// given index
-		final int leftidx = findGroupDelimiter( input, index, '{' );
-		final int rightidx = findGroupDelimiter( input, index, '}' );
-		return input.substring( 0, leftidx ) + input.substring( rightidx + 1 );
-	}
-	
-	/**
-	 * Scans the input string until the specified delimiter is found that opens
-	 * or closes the group of which the index position is present. It will not
-	 * simply return the first occurrence of the delimiter, rather it finds the
-	 * delimiter that actually opens/closes the group. In other words, it will
-	 * include other delimiters is they are contained within the same JSON object
-	 * 
-	 * @param input The input string to scan
-	 * @param startidx The index to start scanning from
-	 * @param delimiter The delimiter to find
-	 * @return The index of the delimiter that opens/closes the group
+	 * @param input The reader to read the JSON document from
+	 * @param filtervalue The value to filter object with
+	 * @return The sum over non-filtered numbers
+	 * @throws IOException if reading the document failed
 	 */
-	private static int findGroupDelimiter( final String input, final int startidx, final char delimiter ) {
-		int idx = startidx;
-		final int dir = delimiter == '{' ? -1 : 1;
-		int level = 1;
-		while( level > 0 ) {
-			idx += dir;
-			if( idx < 0 || idx >= input.length( ) ) throw new RuntimeException( "Failed to extract group from input: " + input );
-			
-			final char curr = input.charAt( idx );
-			if( curr == '{' ) level += dir;
-			else if( curr == '}' ) level -= dir;
-		}
-		
-		return idx;
+	public static long sumNumbersFiltered( final Reader input, final String filtervalue ) throws IOException {
+		return JSONNumberSummer.sum( input, filtervalue );
 	}
 }
@@ -0,0 +1,221 @@
+package aoc2015.day12;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Single-pass streaming summer of all numbers in a JSON document. The document
+ * is tokenised character by character while a stack of partial sums is kept,
+ * one per open object or array. When an object turns out to contain a property
+ * with the filtered value, its partial sum is discarded when it closes. Memory
+ * use is therefore linear in the nesting depth and not in the document size.
+ * 
+ * Only integer numbers are supported, as is the case for Santa's accounting.
+ * 
+ * @author Joris
+ */
+public class JSONNumberSummer {
+	/** The property value that filters an object, null to not filter */
+	private final char[] filter;
+	
+	/** The partial sums per nesting level */
+	private long[] sums;
+	
+	/** True if the object at the nesting level has been filtered */
+	private boolean[] filtered;
+	
+	/** True if the nesting level is an object, false for arrays */
+	private boolean[] object;
+	
+	/** The current nesting depth */
+	private int depth;
+	
+	/** The sum of numbers outside any object or array */
+	private long total;
+	
+	/** Tokeniser state: inside a string, after an escape character */
+	private boolean instring, escape;
+	
+	/** True if the next token is an object property value */
+	private boolean expectvalue;
+	
+	/** True if the current string is a property value that may match the filter */
+	private boolean matching;
+	
+	/** The number of characters of the current string that matched the filter */
+	private int matchlength;
+	
+	/** Tokeniser state: inside a number and whether it is negative */
+	private boolean innumber, negative;
+	
+	/** The value of the current number */
+	private long number;
+	
+	/**
+	 * Creates a new summer
+	 * 
+	 * @param filtervalue The property value that filters objects, null to sum
+	 *   all numbers
+	 */
+	public JSONNumberSummer( final String filtervalue ) {
+		this.filter = filtervalue != null ? filtervalue.toCharArray( ) : null;
+		this.sums = new long[ 16 ];
+		this.filtered = new boolean[ 16 ];
+		this.object = new boolean[ 16 ];
+	}
+	
+	/**
+	 * Sums the numbers of the document read from the reader
+	 * 
+	 * @param reader The reader to read the document from
+	 * @param filtervalue The property value that filters objects, null for none
+	 * @return The sum over all non-filtered numbers
+	 * @throws IOException if reading failed
+	 */
+	public static long sum( final Reader reader, final String filtervalue ) throws IOException {
+		final JSONNumberSummer summer = new JSONNumberSummer( filtervalue );
+		final char[] buffer = new char[ 1 << 16 ];
+		int read;
+		while( (read = reader.read( buffer )) != -1 )
+			for( int i = 0; i < read; i++ ) summer.feed( buffer[i] );
+		return summer.getSum( );
+	}
+	
+	/**
+	 * Sums the numbers of the (ASCII or UTF-8 encoded) document in the buffer,
+	 * e.g. a memory mapped file
+	 * 
+	 * @param buffer The buffer that contains the document
+	 * @param filtervalue The property value that filters objects, null for none
+	 * @return The sum over all non-filtered numbers
+	 */
+	public static long sum( final ByteBuffer buffer, final String filtervalue ) {
+		final JSONNumberSummer summer = new JSONNumberSummer( filtervalue );
+		while( buffer.hasRemaining( ) ) summer.feed( (char)(buffer.get( ) & 0xFF) );
+		return summer.getSum( );
+	}
+	
+	/**
+	 * Processes the next character of the document
+	 * 
+	 * @param c The character
+	 */
+	public void feed( final char c ) {
+		if( instring ) {
+			if( escape ) {
+				escape = false;
+				matching = false;
+			} else if( c == '\\' ) {
+				escape = true;
+			} else if( c == '"' ) {
+				// end of string, filter the object if its value matched
+				instring = false;
+				if( matching && matchlength == filter.length ) filtered[ depth - 1 ] = true;
+			} else if( matching ) {
+				matching = matchlength < filter.length && filter[ matchlength++ ] == c;
+			}
+			return;
+		}
+		
+		if( c >= '0' && c <= '9' ) {
+			innumber = true;
+			number = number * 10 + (c - '0');
+			return;
+		}
+		if( innumber ) endNumber( );
+		
+		switch( c ) {
+			case '-':
+				innumber = true;
+				negative = true;
+				expectvalue = false;
+				break;
+				
+			case '"':
+				instring = true;
+				matching = filter != null && expectvalue && depth > 0 && object[ depth - 1 ];
+				matchlength = 0;
+				expectvalue = false;
+				break;
+			
+			case '{':
+			case '[':
+				push( c == '{' );
+				expectvalue = false;
+				break;
+				
+			case '}':
+			case ']':
+				pop( );
+				break;
+			
+			case ':':
+				expectvalue = true;
+				break;
+				
+			case ',':
+				expectvalue = false;
+				break;
+				
+			default:
+				break;
+		}
+	}
+	
+	/**
+	 * Completes the document and returns the sum over all non-filtered numbers
+	 * 
+	 * @return The sum
+	 */
+	public long getSum( ) {
+		if( innumber ) endNumber( );
+		if( depth != 0 ) throw new RuntimeException( "Invalid JSON document: " + depth + " unclosed objects or arrays" );
+		return total;
+	}
+	
+	/**
+	 * Adds the current number to the partial sum of the current level
+	 */
+	private void endNumber( ) {
+		final long value = negative ? -number : number;
+		if( depth > 0 ) sums[ depth - 1 ] += value;
+		else total += value;
+		
+		innumber = false;
+		negative = false;
+		number = 0;
+	}
+	
+	/**
+	 * Opens a new nesting level
+	 * 
+	 * @param isobject True if the level is an object, false for an array
+	 */
+	private void push( final boolean isobject ) {
+		if( depth == sums.length ) {
+			sums = Arrays.copyOf( sums, depth * 2 );
+			filtered = Arrays.copyOf( filtered, depth * 2 );
+			object = Arrays.copyOf( object, depth * 2 );
+		}
+		
+		sums[ depth ] = 0;
+		filtered[ depth ] = false;
+		object[ depth ] = isobject;
+		depth++;
+	}
+	
+	/**
+	 * Closes the current nesting level and adds its partial sum to the parent
+	 * level, unless it was filtered
+	 */
+	private void pop( ) {
+		if( depth == 0 ) throw new RuntimeException( "Invalid JSON document: unmatched closing bracket" );
+		depth--;
+		if( filtered[ depth ] ) return;
+		
+		if( depth > 0 ) sums[ depth - 1 ] += sums[ depth ];
+		else total += sums[ depth ];
+	}
+}
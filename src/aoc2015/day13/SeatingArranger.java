@@ -6,7 +6,7 @@ import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import aocutil.collections.CollectionUtil;
+import aoc2015.tsp.HeldKarpSolver;
 
 /**
  * Class that helps optimise the seating arrangement at Christmas dinner based
@@ -97,23 +97,22 @@ public class SeatingArranger {
 	 * @return The seating as a string person1 -> person2 -> ... = liking
 	 */
 	public String getBestSeating( ) {
-		// get all permutations of cities
-		final List<List<String>> seatings = CollectionUtil.generatePermutations( peoplemap.keySet( ) );
+		// the liking of two neighbours is the sum of their mutual ratings
+		final int N = peoplemap.size( );
+		final int[][] L = new int[ N ][ N ];
+		for( int i = 0; i < N; i++ )
+			for( int j = 0; j < N; j++ )
+				L[i][j] = D[i][j] + D[j][i];
+		
+		// find the cycle around the table that maximises the total liking
+		final HeldKarpSolver.Route seating = new HeldKarpSolver( L, true ).solveCycle( );
 		
-		// find the permutation that has the best liking rating
-		List<String> bestseating = null;
-		int maxliking = 0;
-		for( final List<String> seating : seatings ) {
-			// compute distance of route
-			final int liking = liking( seating );
-			if( liking > maxliking ) {
-				maxliking = liking;
-				bestseating = seating;
-			}
-		}
-
 		// return it as a string with its liking
-		return bestseating.stream( ).reduce(  "", (x,y) -> x + " -> " + y ).substring( 4 ) + ": " + maxliking;
+		final String[] people = new String[ N ];
+		for( final Map.Entry<String, Integer> e : peoplemap.entrySet( ) ) people[ e.getValue( ) ] = e.getKey( );
+		final StringBuilder res = new StringBuilder( );
+		for( final int p : seating.getOrder( ) ) res.append( " -> " + people[ p ] );
+		return res.substring( 4 ) + ": " + seating.score;
 	}
 	
 	/**
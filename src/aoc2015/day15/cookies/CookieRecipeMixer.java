@@ -1,12 +1,12 @@
 package aoc2015.day15.cookies;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Stack;
 
 /**
  * Class that mixes a set of given ingredients until a perfect mix is found 
@@ -34,49 +34,34 @@ public class CookieRecipeMixer {
 	 * @return The perfect cookie recipe
 	 */
 	public CookieRecipe findOptimalMix( final int calories ) {
-		// create maps to hold the current and optimal mix
-		final CookieRecipe optimal = new CookieRecipe( );
-		final Map<Ingredient, Integer> mix = new HashMap<>( ingredients.size( ) );
-		
-		// go over all possible mixes
-		final Stack<Ingredient> remaining = new Stack<>( );
-		remaining.addAll( ingredients );
-		mix( optimal, calories, mix, remaining, 100 );
-		
-		return optimal;
+		return findOptimalMix( calories, 100 );
 	}
 	
 	/**
-	 * Recursively adds amounts of every ingredient to the mix until the perfect
-	 * mix has been found
+	 * Finds the optimal mix that maximises the ingredient score, using at least
+	 * one teaspoon of every ingredient
 	 * 
-	 * @param optimal The current optimal recipe
 	 * @param calories The exact calorie score it needs to match, -1 for any
-	 * @param mix The current mix of ingredients
-	 * @param remaining The set of remaining ingredients
-	 * @param teaspoons The remaining amount of teaspoons to complete the recipe
+	 * @param teaspoons The number of teaspoons in the recipe
+	 * @return The perfect cookie recipe
 	 */
-	private void mix( final CookieRecipe optimal, final int calories, final Map<Ingredient, Integer> mix, final Stack<Ingredient> remaining, final int teaspoons ) {
-		// no more ingredients remain, compute the score of the mix and save it if
-		// it is better than our current best
-		if( remaining.size( ) == 0 ) {
-			// is this solution valid?
-			if( teaspoons != 0 ) return;
-			if( calories != -1 && getCalorieScore( mix ) != calories ) return;
-			
-			// compute score of this mix and return it
-			final long score = getMixScore( mix );
-			if( score > optimal.getScore( ) ) optimal.set( mix, score );
-			return;
-		}
+	public CookieRecipe findOptimalMix( final int calories, final int teaspoons ) {
+		// convert ingredients to primitive property vectors for the solver
+		final List<Ingredient> ingr = new ArrayList<>( ingredients );
+		final int[][] props = new int[ ingr.size( ) ][];
+		for( int i = 0; i < props.length; i++ ) props[i] = ingr.get( i ).properties;
 		
-		// mix next remaining ingredient and try all mixing ratios
-		final Ingredient i = remaining.pop( );
-		for( int amount = teaspoons; amount >= 1; amount-- ) {
-			mix.put( i, amount );
-			mix( optimal, calories, mix, remaining, teaspoons - amount );
-		}
-		remaining.add( i );
+		final RecipeSolver solver = new RecipeSolver( props, teaspoons, 1, calories );
+		final long score = solver.solve( );
+		
+		// and convert the best mix back into a recipe
+		final CookieRecipe optimal = new CookieRecipe( );
+		final int[] amounts = solver.getMix( );
+		if( amounts == null ) return optimal;
+		final Map<Ingredient, Integer> mix = new HashMap<>( ingr.size( ) );
+		for( int i = 0; i < amounts.length; i++ ) mix.put( ingr.get( i ), amounts[i] );
+		optimal.set( mix, score );
+		return optimal;
 	}
 	
 	/**
@@ -0,0 +1,278 @@
+package aoc2015.day15.cookies;
+
+/**
+ * Upper bound on the score of any valid mix that completes a partial recipe.
+ * Every property is bounded by its linear maximum over the remaining
+ * teaspoons. Because the score is a product of properties, the weighted AM-GM
+ * inequality bounds it by a weighted sum of the properties as well, which is
+ * again a linear maximum. With a calorie target, such a maximum must also meet
+ * the target and is therefore attained by mixing at most two ingredients.
+ *
+ * The calorie totals that every suffix of ingredients can reach are
+ * precomputed as bit sets per number of teaspoons, so that partial recipes
+ * that can no longer hit the target exactly are rejected.
+ *
+ * @author Joris
+ */
+public class RecipeBound {
+	/** The number of scoring properties, calories are the property after it */
+	private static final int P = Ingredient.Calories;
+
+	/** The property vectors of the ingredients */
+	private final int[][] props;
+
+	/** The number of ingredients */
+	private final int N;
+
+	/** The minimal number of teaspoons per ingredient */
+	private final int minamount;
+
+	/** The exact number of calories required, -1 for any */
+	private final int calories;
+
+	/** The smallest calorie value of all ingredients */
+	private final int mincal;
+
+	/** The calories of every ingredient minus the smallest calorie value */
+	private final int[] cal;
+
+	/** The sum of property values over ingredients i..N-1 */
+	private final long[][] suffixsum;
+
+	/**
+	 * The calorie totals that ingredients k..N-1 can reach with e extra
+	 * teaspoons, relative to the smallest calorie value, as bit set reach[k][e]
+	 */
+	private final long[][][] reach;
+
+	/**
+	 * Creates a new bound for the recipe
+	 *
+	 * @param props The property vector of every ingredient
+	 * @param teaspoons The number of teaspoons to divide
+	 * @param minamount The minimal amount of teaspoons per ingredient
+	 * @param calories The exact number of calories required, -1 for any
+	 */
+	public RecipeBound( final int[][] props, final int teaspoons, final int minamount, final int calories ) {
+		this.props = props;
+		this.N = props.length;
+		this.minamount = minamount;
+		this.calories = calories;
+
+		suffixsum = new long[ N + 1 ][ P + 1 ];
+		for( int i = N - 1; i >= 0; i-- )
+			for( int p = 0; p <= P; p++ )
+				suffixsum[ i ][ p ] = suffixsum[ i + 1 ][ p ] + props[ i ][ p ];
+
+		int min = 0;
+		for( int i = 0; i < N; i++ ) min = i == 0 ? props[i][ P ] : Math.min( min, props[i][ P ] );
+		mincal = min;
+		cal = new int[ N ];
+		for( int i = 0; i < N; i++ ) cal[i] = props[i][ P ] - mincal;
+
+		reach = calories != -1 && N > 0 && teaspoons >= N * minamount ? computeReach( teaspoons - N * minamount ) : null;
+	}
+
+	/**
+	 * Computes the calorie totals that can be reached by every suffix of
+	 * ingredients, for every number of extra teaspoons. A suffix reaches a
+	 * total with e teaspoons if the suffix without its first ingredient reaches
+	 * it, or if the total minus one teaspoon of the first ingredient is
+	 * reachable with e - 1 teaspoons.
+	 *
+	 * @param E The maximal number of extra teaspoons
+	 * @return The bit sets reach[k][e]
+	 */
+	private long[][][] computeReach( final int E ) {
+		int maxcal = 0;
+		for( final int c : cal ) maxcal = Math.max( maxcal, c );
+		final int words = (int)(((long)maxcal * E) / 64 + 1);
+
+		final long[][][] r = new long[ N + 1 ][ E + 1 ][];
+		final long[] none = new long[ words ];
+		r[ N ][ 0 ] = new long[ words ];
+		r[ N ][ 0 ][ 0 ] = 1;
+		for( int e = 1; e <= E; e++ ) r[ N ][ e ] = none;
+
+		for( int k = N - 1; k >= 0; k-- ) {
+			r[ k ][ 0 ] = r[ k + 1 ][ 0 ];
+			for( int e = 1; e <= E; e++ ) {
+				r[ k ][ e ] = r[ k + 1 ][ e ].clone( );
+				orShifted( r[ k ][ e ], r[ k ][ e - 1 ], cal[ k ] );
+			}
+		}
+		return r;
+	}
+
+	/**
+	 * Bounds the score of any valid mix that assigns the remaining teaspoons to
+	 * ingredients k..N-1
+	 *
+	 * @param sums The current property sums
+	 * @param k The first unassigned ingredient
+	 * @param remaining The number of teaspoons that remain
+	 * @param weights The property weights that make the weighted bound tight at
+	 *   the best mix, null if there is none yet
+	 * @param current The best score so far, the bound may stop refining once it
+	 *   drops to this score
+	 * @return The upper bound on the score, -1 if no valid mix exists
+	 */
+	public double bound( final long[] sums, final int k, final int remaining, final double[] weights, final long current ) {
+		// the teaspoons beyond the minimal amount of every remaining ingredient
+		final int extra = remaining - (N - k) * minamount;
+
+		// can we still hit the calorie target exactly? Track the calories of the
+		// extra teaspoons relative to the smallest calorie value
+		long target = -1;
+		if( calories != -1 ) {
+			target = calories - sums[ P ] - suffixsum[ k ][ P ] * minamount - (long)mincal * extra;
+			final long[] r = reach[ k ][ extra ];
+			if( target < 0 || target >= r.length * 64l || (r[ (int)(target >> 6) ] & (1l << target)) == 0 ) return -1;
+		}
+
+		// bound the score by the maximal attainable value of every property
+		final double[] values = new double[ N ];
+		final double[] v = new double[ P ];
+		double bound = 1;
+		for( int p = 0; p < P; p++ ) {
+			for( int i = k; i < N; i++ ) values[i] = props[i][p];
+			final double ub = getBase( sums, k, p ) + maxLinear( values, k, extra, target, null );
+			if( ub <= 0 ) return 0;
+			bound *= ub;
+			v[ p ] = 1.0 / ub;
+		}
+		if( bound <= current ) return bound;
+
+		// bound by the weighted AM-GM inequality, prod L_p <= (sum w_p L_p / P)^P
+		// / prod w_p for positive weights. Without a best mix, weighting by the
+		// inverse maximal values still separates many branches
+		final double[] point = new double[ P ];
+		bound = Math.min( bound, boundWeighted( weights != null ? weights : v, sums, k, extra, target, values, point ) );
+		if( bound <= current ) return bound;
+
+		// the weighted bound is tight at the properties of the linear maximum
+		// when weighted by their inverse, which often separates the branch
+		for( int p = 0; p < P; p++ ) {
+			v[ p ] = getBase( sums, k, p ) + point[ p ];
+			if( v[ p ] <= 0 ) return bound;
+			v[ p ] = 1.0 / v[ p ];
+		}
+		return Math.min( bound, boundWeighted( v, sums, k, extra, target, values, point ) );
+	}
+
+	/**
+	 * Computes the value of a property when all remaining ingredients get their
+	 * minimal amount
+	 *
+	 * @param sums The current property sums
+	 * @param k The first unassigned ingredient
+	 * @param p The property
+	 * @return The property value
+	 */
+	private long getBase( final long[] sums, final int k, final int p ) {
+		return sums[ p ] + suffixsum[ k ][ p ] * minamount;
+	}
+
+	/**
+	 * Bounds the score by the weighted AM-GM inequality
+	 *
+	 * @param w The positive weight of every property
+	 * @param sums The current property sums
+	 * @param k The first unassigned ingredient
+	 * @param extra The number of extra teaspoons
+	 * @param target The calories of the extra teaspoons relative to the
+	 *   smallest calorie value, -1 for any
+	 * @param values Scratch array for the weighted ingredient values
+	 * @param point Receives the properties of the extra teaspoons that
+	 *   maximise the weighted sum
+	 * @return The upper bound on the score
+	 */
+	private double boundWeighted( final double[] w, final long[] sums, final int k, final int extra, final long target, final double[] values, final double[] point ) {
+		double lin = 0, wprod = 1;
+		for( int p = 0; p < P; p++ ) {
+			lin += w[ p ] * getBase( sums, k, p );
+			wprod *= w[ p ];
+		}
+		for( int i = k; i < N; i++ ) {
+			values[i] = 0;
+			for( int p = 0; p < P; p++ ) values[i] += w[ p ] * props[i][p];
+		}
+		lin += maxLinear( values, k, extra, target, point );
+		return lin > 0 ? Math.pow( lin / P, P ) / wprod : 0;
+	}
+
+	/**
+	 * Maximises the linear function sum v_i y_i over fractional extra amounts
+	 * y_i >= 0 of ingredients k..N-1 that sum to the extra teaspoons and, with
+	 * a calorie target, exactly meet the target. The calorie constraint makes
+	 * this a linear program with two constraints, of which the maximum is
+	 * attained by at most two ingredients.
+	 *
+	 * @param v The value of every ingredient
+	 * @param k The first remaining ingredient
+	 * @param extra The number of extra teaspoons
+	 * @param target The calories of the extra teaspoons relative to the
+	 *   smallest calorie value, -1 for any
+	 * @param point Receives the properties of the maximising extra amounts if
+	 *   not null
+	 * @return The maximal value
+	 */
+	private double maxLinear( final double[] v, final int k, final int extra, final long target, final double[] point ) {
+		// the maximum mixes ingredients i and j with a fraction f of i
+		double max = Double.NEGATIVE_INFINITY;
+		int besti = k, bestj = k;
+		double bestf = 1;
+		if( target < 0 ) {
+			for( int i = k; i < N; i++ )
+				if( v[i] > max ) {
+					max = v[i];
+					besti = bestj = i;
+				}
+		} else if( extra == 0 ) {
+			max = 0;
+		} else {
+			// the average calories per extra teaspoon must equal t
+			final double t = (double)target / extra;
+			for( int i = k; i < N; i++ ) {
+				if( cal[i] == t && v[i] > max ) {
+					max = v[i];
+					besti = bestj = i;
+					bestf = 1;
+				}
+				if( cal[i] >= t ) continue;
+				for( int j = k; j < N; j++ ) {
+					if( cal[j] <= t ) continue;
+					final double f = (cal[j] - t) / (cal[j] - cal[i]);
+					final double val = v[i] * f + v[j] * (1 - f);
+					if( val <= max ) continue;
+					max = val;
+					besti = i;
+					bestj = j;
+					bestf = f;
+				}
+			}
+		}
+
+		if( point != null )
+			for( int p = 0; p < P; p++ ) point[ p ] = extra * (props[ besti ][ p ] * bestf + props[ bestj ][ p ] * (1 - bestf));
+		return max * extra;
+	}
+
+	/**
+	 * Bitwise ORs the source bit set, shifted left by the given number of bits,
+	 * into the target bit set. Bits beyond the target length are discarded.
+	 *
+	 * @param target The target bit set
+	 * @param source The source bit set
+	 * @param shift The number of bits to shift
+	 */
+	private static void orShifted( final long[] target, final long[] source, final int shift ) {
+		final int wordshift = shift >> 6;
+		final int bitshift = shift & 63;
+		for( int w = target.length - 1; w >= wordshift; w-- ) {
+			long value = source[ w - wordshift ] << bitshift;
+			if( bitshift > 0 && w - wordshift - 1 >= 0 ) value |= source[ w - wordshift - 1 ] >>> (64 - bitshift);
+			target[w] |= value;
+		}
+	}
+}
@@ -0,0 +1,417 @@
+package aoc2015.day15.cookies;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Branch-and-bound solver that finds the teaspoon split over ingredients that
+ * maximises the cookie score. Ingredients are represented by primitive
+ * property vectors and are assigned an amount one at a time. Every partial mix
+ * is bounded by a RecipeBound, which also rejects partial mixes that can no
+ * longer meet the calorie target.
+ *
+ * The amounts of an ingredient are tried in order of their bound, so that good
+ * mixes are found early. The last two ingredients, or the last three with a
+ * calorie target, are solved directly. The ingredients themselves are ordered
+ * by the optimal mix of a coarser recipe. The amounts of the first ingredient
+ * are divided over the fork-join pool.
+ *
+ * @author Joris
+ */
+public class RecipeSolver {
+	/** The number of scoring properties, calories are the property after it */
+	private static final int P = Ingredient.Calories;
+
+	/** The property vectors of the ingredients */
+	private final int[][] props;
+
+	/** The number of ingredients */
+	private final int N;
+
+	/** The total number of teaspoons in the recipe */
+	private final int teaspoons;
+
+	/** The minimal number of teaspoons per ingredient */
+	private final int minamount;
+
+	/** The exact number of calories required, -1 for any */
+	private final int calories;
+
+	/** The bound on partial mixes */
+	private final RecipeBound bound;
+
+	/** The best score found so far */
+	private final AtomicLong best;
+
+	/** The amounts of the best mix */
+	private int[] bestmix;
+
+	/**
+	 * The weight per property for the weighted sum bound, the inverse of the
+	 * property values of the best mix
+	 */
+	private volatile double[] weights;
+
+	/**
+	 * Creates a new solver
+	 *
+	 * @param props The property vector (capacity, durability, flavour, texture,
+	 *   calories) of every ingredient
+	 * @param teaspoons The number of teaspoons to divide
+	 * @param minamount The minimal amount of teaspoons per ingredient
+	 * @param calories The exact number of calories required, -1 for any
+	 */
+	public RecipeSolver( final int[][] props, final int teaspoons, final int minamount, final int calories ) {
+		this.props = props;
+		this.N = props.length;
+		this.teaspoons = teaspoons;
+		this.minamount = minamount;
+		this.calories = calories;
+		this.best = new AtomicLong( -1 );
+
+		this.bound = new RecipeBound( props, teaspoons, minamount, calories );
+	}
+
+	/**
+	 * Finds the optimal mix. The ingredients are ordered by the optimal mix of
+	 * the same recipe with ten times fewer teaspoons and calories, which has
+	 * about the same proportions. Ingredients at their minimal amount in that
+	 * mix go first, as their bounds drop quickly with every extra teaspoon,
+	 * followed by the others by decreasing amount.
+	 *
+	 * @return The score of the optimal mix, -1 if no valid mix exists
+	 */
+	public long solve( ) {
+		if( N == 0 || teaspoons < N * minamount ) return -1;
+
+		final int[] coarse = getCoarseMix( );
+		final int[] order = IntStream.range( 0, N ).boxed( ).sorted( ( a, b ) -> {
+			if( coarse == null ) return 0;
+			if( (coarse[a] == minamount) != (coarse[b] == minamount) ) return coarse[a] == minamount ? -1 : 1;
+			return Integer.compare( coarse[b], coarse[a] );
+		} ).mapToInt( i -> i ).toArray( );
+		int fixed = 0;
+		while( coarse != null && fixed < N - 1 && coarse[ order[ fixed ] ] == minamount ) fixed++;
+
+		final int[][] ordered = new int[ N ][];
+		for( int i = 0; i < N; i++ ) ordered[i] = props[ order[i] ];
+		final RecipeSolver solver = new RecipeSolver( ordered, teaspoons, minamount, calories );
+
+		// the mixes that keep these ingredients at their minimal amount likely
+		// contain a good mix to prune the full search with
+		if( fixed > 0 ) solver.search( fixed );
+		solver.search( 0 );
+		if( solver.bestmix == null ) return -1;
+
+		bestmix = new int[ N ];
+		for( int i = 0; i < N; i++ ) bestmix[ order[i] ] = solver.bestmix[i];
+		best.set( solver.best.get( ) );
+		return best.get( );
+	}
+
+	/**
+	 * Solves the same recipe with ten times fewer teaspoons and calories
+	 *
+	 * @return The optimal mix of the smaller recipe, null if there is none
+	 */
+	private int[] getCoarseMix( ) {
+		final int coarseteaspoons = teaspoons / 10;
+		if( coarseteaspoons == 0 || coarseteaspoons < N * minamount ) return null;
+
+		final RecipeSolver coarse = new RecipeSolver( props, coarseteaspoons, minamount, calories == -1 ? -1 : Math.round( calories / 10.0f ) );
+		return coarse.solve( ) >= 0 ? coarse.getMix( ) : null;
+	}
+
+	/**
+	 * Searches all mixes that assign the minimal amount to the first ingredients
+	 *
+	 * @param fixed The number of ingredients at their minimal amount
+	 */
+	private void search( final int fixed ) {
+		final int[] mix = new int[ N ];
+		final long[] sums = new long[ P + 1 ];
+		for( int i = 0; i < fixed; i++ ) assign( mix, sums, i, minamount );
+
+		final int remaining = teaspoons - fixed * minamount;
+		if( bound.bound( sums, fixed, remaining, weights, -1 ) >= 0 ) search( mix, sums, fixed, remaining );
+	}
+
+	/** @return The amounts per ingredient of the best mix */
+	public int[] getMix( ) {
+		return bestmix == null ? null : bestmix.clone( );
+	}
+
+	/**
+	 * Recursively assigns amounts to the remaining ingredients. The branch
+	 * itself has already been checked against the bounds.
+	 *
+	 * @param mix The current amounts
+	 * @param sums The current property sums
+	 * @param k The next ingredient to assign
+	 * @param remaining The number of teaspoons that remain
+	 */
+	private void search( final int[] mix, final long[] sums, final int k, final int remaining ) {
+		// the last ingredient takes the remaining teaspoons
+		if( k == N - 1 ) {
+			assign( mix, sums, k, remaining );
+			if( calories == -1 || sums[ P ] == calories ) offer( mix, score( sums ) );
+			assign( mix, sums, k, -remaining );
+			return;
+		}
+		if( isLine( k ) ) {
+			searchLine( mix, sums, k, remaining );
+			return;
+		}
+
+		final long[] order = getAmountOrder( mix, sums, k, remaining );
+		if( k == 0 ) {
+			IntStream.range( 0, order.length ).parallel( ).forEach( i -> {
+				final int[] m = mix.clone( );
+				final long[] s = sums.clone( );
+				searchAmount( m, s, k, remaining, order[ i ] );
+			} );
+			return;
+		}
+
+		for( final long o : order )
+			if( !searchAmount( mix, sums, k, remaining, o ) ) return;
+	}
+
+	/**
+	 * Continues the search with one amount of ingredient k, if its bound still
+	 * improves on the best score
+	 *
+	 * @param mix The current amounts
+	 * @param sums The current property sums
+	 * @param k The ingredient to assign
+	 * @param remaining The number of teaspoons that remain
+	 * @param order The bound and amount as encoded by getAmountOrder
+	 * @return False if the bound no longer improves on the best score, so that
+	 *   the amounts that follow in the order can be skipped too
+	 */
+	private boolean searchAmount( final int[] mix, final long[] sums, final int k, final int remaining, final long order ) {
+		if( Float.intBitsToFloat( (int)(order >>> 32) ) <= best.get( ) ) return false;
+
+		final int x = (int)order;
+		assign( mix, sums, k, x );
+		search( mix, sums, k + 1, remaining - x );
+		assign( mix, sums, k, -x );
+		return true;
+	}
+
+	/**
+	 * Bounds every amount of ingredient k and orders the amounts that may
+	 * improve on the best score by decreasing bound
+	 *
+	 * @param mix The current amounts
+	 * @param sums The current property sums
+	 * @param k The ingredient to assign
+	 * @param remaining The number of teaspoons that remain
+	 * @return The amounts, each encoded as the float bits of its bound, rounded
+	 *   up, in the upper half and the amount in the lower half
+	 */
+	private long[] getAmountOrder( final int[] mix, final long[] sums, final int k, final int remaining ) {
+		final int max = remaining - (N - k - 1) * minamount;
+		final long[] order = new long[ max - minamount + 1 ];
+		int n = 0;
+		for( int x = minamount; x <= max; x++ ) {
+			final long current = best.get( );
+			assign( mix, sums, k, x );
+			final double b = bound.bound( sums, k + 1, remaining - x, weights, current );
+			assign( mix, sums, k, -x );
+			if( b > current ) order[ n++ ] = (long)Float.floatToIntBits( Math.nextUp( (float)b ) ) << 32 | x;
+		}
+
+		// bounds are non-negative, so their float bits sort in the same order
+		Arrays.sort( order, 0, n );
+		final long[] sorted = new long[ n ];
+		for( int i = 0; i < n; i++ ) sorted[i] = order[ n - 1 - i ];
+		return sorted;
+	}
+
+	/**
+	 * Checks whether the valid amounts of ingredients k..N-1 lie on a line
+	 *
+	 * @param k The first of the remaining ingredients
+	 * @return True for the last two ingredients, or for the last three if they
+	 *   must meet the calorie target and their calories are not all equal
+	 */
+	private boolean isLine( final int k ) {
+		if( k == N - 2 ) return true;
+		return calories != -1 && k == N - 3 && (props[k][ P ] != props[k + 1][ P ] || props[k + 1][ P ] != props[k + 2][ P ]);
+	}
+
+	/**
+	 * Divides the remaining teaspoons over the last ingredients when their
+	 * valid amounts lie on a line. That is the case for the last two
+	 * ingredients, or for the last three if their amounts must also meet the
+	 * calorie target. The amounts are then x + t * d for integer t, so that the
+	 * score is a product of properties that are linear in t. This product is
+	 * log-concave where all properties are positive and thus maximised by
+	 * binary search.
+	 *
+	 * @param mix The current amounts
+	 * @param sums The current property sums
+	 * @param k The first of the remaining ingredients
+	 * @param remaining The number of teaspoons that remain
+	 */
+	private void searchLine( final int[] mix, final long[] sums, final int k, final int remaining ) {
+		final int n = N - k;
+		final long[] x = new long[ n ];
+		final long[] d = new long[ n ];
+		if( n == 2 ) {
+			x[0] = minamount;
+			x[1] = remaining - minamount;
+			d[0] = 1;
+			d[1] = -1;
+			if( calories != -1 ) {
+				// the amounts follow from the target unless the calories are equal
+				final long diff = props[k][ P ] - props[k + 1][ P ];
+				final long rhs = calories - sums[ P ] - (long)props[k + 1][ P ] * remaining;
+				if( diff != 0 ) {
+					if( rhs % diff != 0 ) return;
+					x[0] = rhs / diff;
+					x[1] = remaining - x[0];
+					d[0] = d[1] = 0;
+				} else if( rhs != 0 ) return;
+			}
+		} else {
+			// the direction keeps the sum of teaspoons and of calories constant
+			final long ca = props[k][ P ], cb = props[k + 1][ P ], cc = props[k + 2][ P ];
+			final long g = gcd( gcd( Math.abs( cb - cc ), Math.abs( cc - ca ) ), Math.abs( ca - cb ) );
+			d[0] = (cb - cc) / g;
+			d[1] = (cc - ca) / g;
+			d[2] = (ca - cb) / g;
+
+			// find any integer solution of (ca - cc) xa + (cb - cc) xb = rhs
+			final long rhs = calories - sums[ P ] - cc * remaining;
+			if( cb != cc ) {
+				x[0] = -1;
+				for( long xa = 0; xa < Math.abs( cb - cc ) && x[0] < 0; xa++ )
+					if( (rhs - (ca - cc) * xa) % (cb - cc) == 0 ) x[0] = xa;
+				if( x[0] < 0 ) return;
+				x[1] = (rhs - (ca - cc) * x[0]) / (cb - cc);
+			} else {
+				if( rhs % (ca - cc) != 0 ) return;
+				x[0] = rhs / (ca - cc);
+			}
+			x[2] = remaining - x[0] - x[1];
+		}
+
+		// restrict t to valid amounts and to positive properties
+		long lo = Long.MIN_VALUE, hi = Long.MAX_VALUE;
+		for( int j = 0; j < n; j++ ) {
+			if( d[j] > 0 ) lo = Math.max( lo, Math.floorDiv( minamount - x[j] + d[j] - 1, d[j] ) );
+			else if( d[j] < 0 ) hi = Math.min( hi, Math.floorDiv( x[j] - minamount, -d[j] ) );
+			else if( x[j] < minamount ) return;
+		}
+		if( lo == Long.MIN_VALUE ) lo = hi = 0;
+		if( lo > hi ) return;
+
+		final long[] base = new long[ P ];
+		final long[] delta = new long[ P ];
+		long poslo = lo, poshi = hi;
+		for( int p = 0; p < P; p++ ) {
+			base[p] = sums[p];
+			for( int j = 0; j < n; j++ ) {
+				base[p] += props[k + j][p] * x[j];
+				delta[p] += props[k + j][p] * d[j];
+			}
+			if( delta[p] > 0 ) poslo = Math.max( poslo, Math.floorDiv( -base[p], delta[p] ) + 1 );
+			else if( delta[p] < 0 ) poshi = Math.min( poshi, Math.floorDiv( base[p] - 1, -delta[p] ) );
+			else if( base[p] <= 0 ) poshi = poslo - 1;
+		}
+
+		// without positive properties every mix on the line scores zero
+		long t = lo;
+		if( poslo <= poshi ) {
+			long a = poslo, b = poshi;
+			while( a < b ) {
+				final long m = a + (b - a) / 2;
+				if( getLineScore( base, delta, m ) < getLineScore( base, delta, m + 1 ) ) a = m + 1;
+				else b = m;
+			}
+			t = a;
+		}
+
+		for( int j = 0; j < n; j++ ) assign( mix, sums, k + j, (int)(x[j] + t * d[j]) );
+		offer( mix, score( sums ) );
+		for( int j = 0; j < n; j++ ) assign( mix, sums, k + j, -(int)(x[j] + t * d[j]) );
+	}
+
+	/**
+	 * Computes the score of properties that are linear in t
+	 *
+	 * @param base The property values at t = 0
+	 * @param delta The change of every property per unit of t
+	 * @param t The value of t
+	 * @return The product of all properties
+	 */
+	private static long getLineScore( final long[] base, final long[] delta, final long t ) {
+		long score = 1;
+		for( int p = 0; p < P; p++ ) score *= base[p] + delta[p] * t;
+		return score;
+	}
+
+	/**
+	 * Computes the greatest common divisor
+	 *
+	 * @param a The first non-negative value
+	 * @param b The second non-negative value
+	 * @return The greatest common divisor of a and b
+	 */
+	private static long gcd( final long a, final long b ) {
+		return b == 0 ? a : gcd( b, a % b );
+	}
+
+	/**
+	 * Adds an amount of the ingredient to the mix
+	 *
+	 * @param mix The mix
+	 * @param sums The property sums of the mix
+	 * @param i The ingredient
+	 * @param amount The amount to add, may be negative
+	 */
+	private void assign( final int[] mix, final long[] sums, final int i, final int amount ) {
+		mix[ i ] += amount;
+		final int[] prop = props[ i ];
+		for( int p = 0; p <= P; p++ ) sums[ p ] += (long)prop[ p ] * amount;
+	}
+
+	/**
+	 * Computes the score of the mix with the given property sums
+	 *
+	 * @param sums The property sums
+	 * @return The score
+	 */
+	private static long score( final long[] sums ) {
+		long score = 1;
+		for( int p = 0; p < P; p++ ) score *= Math.max( 0, sums[ p ] );
+		return score;
+	}
+
+	/**
+	 * Registers the mix as the new best if it improves the score
+	 *
+	 * @param mix The mix
+	 * @param score Its score
+	 */
+	private synchronized void offer( final int[] mix, final long score ) {
+		if( score <= best.get( ) ) return;
+		bestmix = mix.clone( );
+		best.set( score );
+
+		// the weighted bound is tight at the best mix when weighted by its
+		// inverse properties
+		if( score > 0 ) {
+			final double[] w = new double[ P ];
+			for( int i = 0; i < N; i++ )
+				for( int p = 0; p < P; p++ ) w[ p ] += (double)props[ i ][ p ] * mix[ i ];
+			for( int p = 0; p < P; p++ ) w[ p ] = 1.0 / w[ p ];
+			weights = w;
+		}
+	}
+
+
+}
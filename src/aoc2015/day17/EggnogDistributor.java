@@ -1,8 +1,10 @@
 package aoc2015.day17;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Stack;
+import java.util.NoSuchElementException;
 
 /**
  * Class to compute the optimal distribution of Eggnog over the available
@@ -12,7 +14,7 @@ import java.util.Stack;
  */
 public class EggnogDistributor {
 	/** The set of available cup sizes, ordered from small too large */
-	private List<Integer> cups;
+	private final int[] cups;
 
 	/**
 	 * Creates a new EggnogDistributor from the list of cup sizes
@@ -20,13 +22,14 @@ public class EggnogDistributor {
 	 * @param cups The available cup sizes
 	 */
 	public EggnogDistributor( final List<String> cups ) {
-		this.cups = new ArrayList<>( cups.size( ) );
-		for( final String s : cups ) {
-			this.cups.add( Integer.parseInt( s ) );
+		this.cups = new int[ cups.size( ) ];
+		for( int i = 0; i < this.cups.length; i++ ) {
+			this.cups[i] = Integer.parseInt( cups.get( i ) );
+			if( this.cups[i] < 0 ) throw new RuntimeException( "Invalid cup size: " + this.cups[i] );
 		}
 		
 		// make sure the cups are ordered from smallest to largest
-		this.cups.sort( Integer::compareTo );
+		Arrays.sort( this.cups );
 	}
 	
 	/**
@@ -38,9 +41,9 @@ public class EggnogDistributor {
 	 *   volume
 	 */
 	public long countCombinations( final int volume ) {
-		final List<List<String>> combinations = new ArrayList<>( );
-		generateCombinations( combinations, new Stack<>( ), 0, volume );
-		return combinations.size( );
+		long count = 0;
+		for( final long c : countCombinationsBySize( volume ) ) count = Math.addExact( count, c );
+		return count;
 	}
 	
 	/**
@@ -52,35 +55,253 @@ public class EggnogDistributor {
 	 *   volume, such that the combinations are the smallest possible
 	 */
 	public long countSmallestCombinations( final int volume ) {
-		final List<List<String>> combinations = new ArrayList<>( );
-		generateCombinations( combinations, new Stack<>( ), 0, volume );
-
-		// find the minimum combination size
-		final int minsize = combinations.stream( ).mapToInt( x -> x.size( ) ).reduce( Integer.MAX_VALUE, Math::min );
-		return combinations.stream( ).filter( x -> x.size( ) == minsize ).count( );
+		// only the rows up to the smallest number of cups are needed
+		final int mincups = getMinimalCups( volume );
+		if( mincups < 0 ) return 0;
+		return getExactCount( countWays( volume, mincups )[ mincups ][ volume ] );
 	}
 
+	/**
+	 * Counts the combinations of cups that exactly hold the volume, per number
+	 * of cups used
+	 * 
+	 * @param volume The volume of eggnog to store
+	 * @return Array that holds at index k the number of unique combinations of
+	 *   exactly k cups that together hold the volume
+	 * @throws ArithmeticException if a count exceeds the range of a long
+	 */
+	public long[] countCombinationsBySize( final int volume ) {
+		if( volume < 0 ) return new long[ 1 ];
+
+		// no combination can hold more cups than the smallest cups that fit the volume
+		int maxcups = 0;
+		for( long sum = 0; maxcups < cups.length && sum + cups[ maxcups ] <= volume; maxcups++ )
+			sum += cups[ maxcups ];
+
+		final long[][] ways = countWays( volume, maxcups );
+		final long[] counts = new long[ maxcups + 1 ];
+		for( int k = 0; k <= maxcups; k++ ) counts[ k ] = getExactCount( ways[ k ][ volume ] );
+		return counts;
+	}
 	
 	/**
-	 * Generates all unique combinations of cups that together equal the
-	 * required volume and store them in the combinations parameter list 
+	 * Determines the smallest number of cups that together exactly hold the
+	 * volume, by dynamic programming over the volumes that can be reached
+	 * 
+	 * @param volume The volume of eggnog to store
+	 * @return The smallest number of cups, -1 if no combination holds the volume
+	 */
+	private int getMinimalCups( final int volume ) {
+		if( volume < 0 ) return -1;
+
+		final int[] min = new int[ volume + 1 ];
+		Arrays.fill( min, Integer.MAX_VALUE );
+		min[0] = 0;
+		for( final int c : cups ) {
+			// iterate downwards so that every cup is used at most once
+			for( int v = volume; v >= c; v-- )
+				if( min[ v - c ] != Integer.MAX_VALUE && min[ v - c ] + 1 < min[ v ] ) min[ v ] = min[ v - c ] + 1;
+		}
+		return min[ volume ] == Integer.MAX_VALUE ? -1 : min[ volume ];
+	}
+
+	/**
+	 * Counts the combinations of at most maxcups cups for every volume up to
+	 * the given volume. The counts are computed by dynamic programming over the
+	 * number of ways to reach every (volume, number of cups) pair, adding one
+	 * cup at a time, so that no combination is ever constructed. Counts that do
+	 * not fit a long saturate at Long.MAX_VALUE, so that large counts for other
+	 * numbers of cups or volumes do not prevent computing the ones that fit.
+	 * 
+	 * @param volume The volume of eggnog to store
+	 * @param maxcups The maximal number of cups to consider
+	 * @return Array ways[k][v] that holds the number of combinations of k cups
+	 *   with total volume v, saturated at Long.MAX_VALUE
+	 */
+	private long[][] countWays( final int volume, final int maxcups ) {
+		final long[][] ways = new long[ maxcups + 1 ][ volume + 1 ];
+		ways[0][0] = 1;
+		long total = 0;
+		for( int i = 0; i < cups.length; i++ ) {
+			final int c = cups[i];
+			total = Math.min( total + c, volume );
+
+			// iterate downwards so that every cup is used at most once
+			for( int k = Math.min( i + 1, maxcups ); k > 0; k-- ) {
+				final long[] prev = ways[ k - 1 ];
+				final long[] curr = ways[ k ];
+				for( int v = (int)total; v >= c; v-- ) {
+					if( prev[ v - c ] == 0 ) continue;
+					final long sum = curr[ v ] + prev[ v - c ];
+					curr[ v ] = sum < 0 ? Long.MAX_VALUE : sum;
+				}
+			}
+		}
+		return ways;
+	}
+
+	/**
+	 * Checks that a count computed by countWays has not saturated
+	 * 
+	 * @param count The count
+	 * @return The count
+	 * @throws ArithmeticException if the count exceeds the range of a long
+	 */
+	private static long getExactCount( final long count ) {
+		if( count == Long.MAX_VALUE ) throw new ArithmeticException( "The number of combinations exceeds the range of a long" );
+		return count;
+	}
+
+	/**
+	 * Lazily generates all unique combinations of cups that together equal the
+	 * required volume, without storing them. Only branches that can still lead
+	 * to a valid combination are explored.
 	 * 
-	 * @param combinations The set of combinations found
-	 * @param curr The current combination of cups already included
-	 * @param idx The index of the current cup to consider
 	 * @param volume The target volume
+	 * @return An iterable over the combinations, as lists of cup sizes
 	 */
-	private void generateCombinations( final List<List<String>> combinations, final Stack<String> curr, final int idx, final int volume ) {
-		if( volume == 0 ) {
-			combinations.add( new ArrayList<>( curr ) );
-			return;
+	public Iterable<List<Integer>> getCombinations( final int volume ) {
+		return ( ) -> new CombinationIterator( volume );
+	}
+
+	/**
+	 * Iterator over the cup combinations, in depth-first order
+	 */
+	private class CombinationIterator implements Iterator<List<Integer>> {
+		/** The volumes that can be reached using cups i and beyond, as bit sets */
+		private final long[][] reach;
+
+		/** The volume that remains to be filled before deciding on cup i */
+		private final int[] remaining;
+
+		/** True if cup i is included in the current combination */
+		private final boolean[] included;
+
+		/** The next combination, null if it has not been determined yet */
+		private List<Integer> next;
+
+		/** True if the iterator has been exhausted */
+		private boolean done;
+
+		/** True if the first combination has not been generated yet */
+		private boolean first;
+
+		/**
+		 * Creates a new iterator
+		 * 
+		 * @param volume The target volume
+		 */
+		private CombinationIterator( final int volume ) {
+			final int N = cups.length;
+			remaining = new int[ N + 1 ];
+			included = new boolean[ N ];
+			reach = new long[ N + 1 ][];
+
+			if( volume < 0 ) {
+				done = true;
+				return;
+			}
+
+			// determine the subset sums of every suffix of cups
+			final int words = volume / 64 + 1;
+			reach[ N ] = new long[ words ];
+			reach[ N ][0] = 1;
+			for( int i = N - 1; i >= 0; i-- ) {
+				reach[i] = reach[ i + 1 ].clone( );
+				orShifted( reach[i], reach[ i + 1 ], cups[i] );
+			}
+
+			remaining[0] = volume;
+			done = !isReachable( 0, volume );
+			first = true;
 		}
-		if( volume < 0 || idx >= cups.size( ) ) return;
 		
-		// try both options: either the current cup is or is not included
-		generateCombinations( combinations, curr, idx + 1, volume );
-		curr.push( "" + cups.get( idx ) );
-		generateCombinations( combinations, curr, idx + 1, volume - cups.get( idx ) );
-		curr.pop( );
+		/**
+		 * Checks if the volume can be reached using cups idx and beyond
+		 * 
+		 * @param idx The index of the first cup
+		 * @param volume The volume
+		 * @return True iff a subset of the cups sums to the volume
+		 */
+		private boolean isReachable( final int idx, final int volume ) {
+			return volume >= 0 && volume < reach[ idx ].length * 64 && (reach[ idx ][ volume >> 6 ] & (1l << (volume & 63))) != 0;
+		}
+
+		/**
+		 * Completes the combination from the given cup onwards, preferring to
+		 * leave out cups. Assumes the remaining volume is reachable.
+		 * 
+		 * @param idx The first cup to decide on
+		 */
+		private void descend( final int idx ) {
+			for( int i = idx; i < cups.length; i++ ) {
+				included[i] = !isReachable( i + 1, remaining[i] );
+				remaining[ i + 1 ] = remaining[i] - (included[i] ? cups[i] : 0);
+			}
+		}
+
+		/**
+		 * Moves to the next combination in depth-first order
+		 * 
+		 * @return True if there is a next combination
+		 */
+		private boolean advance( ) {
+			for( int i = cups.length - 1; i >= 0; i-- ) {
+				if( !included[i] && isReachable( i + 1, remaining[i] - cups[i] ) ) {
+					included[i] = true;
+					remaining[ i + 1 ] = remaining[i] - cups[i];
+					descend( i + 1 );
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/** @return True if there is another combination */
+		@Override
+		public boolean hasNext( ) {
+			if( next != null ) return true;
+			if( done ) return false;
+
+			if( first ) {
+				descend( 0 );
+				first = false;
+			} else if( !advance( ) ) {
+				done = true;
+				return false;
+			}
+
+			next = new ArrayList<>( );
+			for( int i = 0; i < cups.length; i++ )
+				if( included[i] ) next.add( cups[i] );
+			return true;
+		}
+
+		/** @return The next combination of cups */
+		@Override
+		public List<Integer> next( ) {
+			if( !hasNext( ) ) throw new NoSuchElementException( );
+			final List<Integer> result = next;
+			next = null;
+			return result;
+		}
+	}
+
+	/**
+	 * Bitwise ORs the source bit set, shifted left by the given number of bits,
+	 * into the target bit set. Bits beyond the target length are discarded.
+	 * 
+	 * @param target The target bit set
+	 * @param source The source bit set
+	 * @param shift The number of bits to shift
+	 */
+	private static void orShifted( final long[] target, final long[] source, final int shift ) {
+		final int wordshift = shift >> 6;
+		final int bitshift = shift & 63;
+		for( int w = target.length - 1; w >= wordshift; w-- ) {
+			long value = source[ w - wordshift ] << bitshift;
+			if( bitshift > 0 && w - wordshift - 1 >= 0 ) value |= source[ w - wordshift - 1 ] >>> (64 - bitshift);
+			target[w] |= value;
+		}
 	}
 }
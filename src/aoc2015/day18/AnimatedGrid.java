@@ -1,119 +1,245 @@
 package aoc2015.day18;
 
 import java.util.List;
-
-import aocutil.geometry.Coord2D;
-import aocutil.geometry.Window2D;
-import aocutil.grid.CoordGrid;
+import java.util.stream.IntStream;
 
 /**
- * Represents a grid of lights that are animated step-wise
- * 
+ * Represents a grid of lights that are animated step-wise. The lights are
+ * stored as bitboard, every row is a sequence of long words with one bit per
+ * light, such that the neighbour counts of 64 lights are computed at once
+ * using bitwise adder logic. The animation alternates between two boards that
+ * are allocated once.
+ *
  * @author Joris
  */
 public class AnimatedGrid {
-	/** The grid of lights */
-	private CoordGrid<Boolean> grid;
-	
+	/** The minimal number of rows per band in the parallel mode */
+	private static final int MIN_BAND = 16;
+
+	/** The width and height of the grid */
+	private final int width, height;
+
+	/** The number of words per row */
+	private final int words;
+
+	/** The mask of valid bits in the last word of every row */
+	private final long lastmask;
+
+	/** The current board and the buffer for the next step */
+	private long[] board, next;
+
 	/** Use the "always on" mode for the corner lights */
 	private boolean cornersAlwayOn;
-	
+
+	/** The number of rows per band when simulating in parallel, 0 if disabled */
+	private int bandsize;
+
 	/**
-	 * Creates a new AnimatedGrid
-	 * 
-	 * @param grid The initial light grid
+	 * Creates a new, empty AnimatedGrid
+	 *
+	 * @param width The width of the grid
+	 * @param height The height of the grid
 	 */
-	private AnimatedGrid( final CoordGrid<Boolean> grid ) {
-		this.grid = grid;
+	private AnimatedGrid( final int width, final int height ) {
+		this.width = width;
+		this.height = height;
+		this.words = Math.max( 1, (width + 63) / 64 );
+		this.lastmask = width % 64 == 0 ? -1l : (1l << (width % 64)) - 1;
+		this.board = new long[ words * height ];
+		this.next = new long[ words * height ];
 		this.cornersAlwayOn = false;
+		this.bandsize = 0;
 	}
-	
+
 	/**
 	 * Enables/disables the "always on" mode for the corner lights
-	 * 
+	 *
 	 * @param alwayson The new value for the mode
 	 */
 	public void setCornerMode( final boolean alwayson ) {
 		this.cornersAlwayOn = alwayson;
 	}
-	
+
+	/**
+	 * Enables/disables simulation of the steps in parallel, in which case the
+	 * grid is divided in bands of rows that are animated concurrently
+	 *
+	 * @param parallel True to enable the parallel mode
+	 */
+	public void setParallel( final boolean parallel ) {
+		final int threads = Runtime.getRuntime( ).availableProcessors( );
+		this.bandsize = parallel ? Math.max( MIN_BAND, (height + 4 * threads - 1) / (4 * threads) ) : 0;
+	}
+
 	/**
 	 * Simulates the grid animations for specified number of steps
-	 * 
+	 *
 	 * @param steps The number of steps
 	 */
 	public void simulate( final int steps ) {
 		for( int i = 0; i < steps; i++ ) step( );
 	}
-	
+
 	/**
 	 * Simulates a single step of the animation in the grid
 	 */
 	private void step( ) {
-		// create a new grid to reflect the new state
-		final CoordGrid<Boolean> newgrid = new CoordGrid<>( false );
-		newgrid.fixWindow( grid.window( ) );
-		
 		// make sure that the corner lights are considered active in the "always on" mode
-		if( cornersAlwayOn ) {
-			final Window2D win = grid.window( );
-			grid.set( win.getMinX( ), win.getMinY( ), true );
-			grid.set( win.getMaxX( ), win.getMinY( ), true );
-			grid.set( win.getMinX( ), win.getMaxY( ), true );
-			grid.set( win.getMaxX( ), win.getMaxY( ), true );
-		}
-				
-		// go over all lights to determine their new state
-		for( final Coord2D c : grid ) {
-			final int oncount = c.getAdjacent( true ).stream( ).mapToInt( x -> grid.get( x ) ? 1 : 0 ).reduce( 0, Math::addExact );
-			final boolean currstate = grid.get( c );
-			final boolean newstate;
-			if( currstate && (oncount == 2 || oncount == 3) ) {
-				newstate = true;
-			} else if( !currstate && (oncount == 3) ) {
-				newstate = true;
-			} else {
-				newstate = false;
-			}
-			
-			if( newstate ) newgrid.set( c, true );
+		if( cornersAlwayOn ) setCorners( board );
+
+		if( bandsize > 0 && height > bandsize ) {
+			final int bands = (height + bandsize - 1) / bandsize;
+			IntStream.range( 0, bands ).parallel( ).forEach( b -> {
+				final int end = Math.min( height, (b + 1) * bandsize );
+				for( int y = b * bandsize; y < end; y++ ) stepRow( y );
+			} );
+		} else {
+			for( int y = 0; y < height; y++ ) stepRow( y );
 		}
-		
+
 		// if the always on mode is activated, the grid's corners again need to be lit
-		if( cornersAlwayOn ) {
-			final Window2D win = newgrid.window( );
-			newgrid.set( win.getMinX( ), win.getMinY( ), true );
-			newgrid.set( win.getMaxX( ), win.getMinY( ), true );
-			newgrid.set( win.getMinX( ), win.getMaxY( ), true );
-			newgrid.set( win.getMaxX( ), win.getMaxY( ), true );
+		if( cornersAlwayOn ) setCorners( next );
+
+		// swap boards
+		final long[] temp = board;
+		board = next;
+		next = temp;
+	}
+
+	/**
+	 * Computes the next state of a single row of lights. The eight neighbour
+	 * bits are summed per bit position by half and full adders, a light is on
+	 * in the next step if its count is three, or if it is two and the light
+	 * is currently on.
+	 *
+	 * @param y The row to compute
+	 */
+	private void stepRow( final int y ) {
+		final int row = y * words;
+		final int up = y > 0 ? row - words : -1;
+		final int down = y < height - 1 ? row + words : -1;
+
+		for( int w = 0; w < words; w++ ) {
+			final long b = board[ row + w ];
+			final long bl = west( row, w ), br = east( row, w );
+			final long a = up >= 0 ? board[ up + w ] : 0, al = west( up, w ), ar = east( up, w );
+			final long c = down >= 0 ? board[ down + w ] : 0, cl = west( down, w ), cr = east( down, w );
+
+			// sum the neighbours per row into a ones and twos bit
+			final long a1 = al ^ a ^ ar, a2 = (al & a) | (ar & (al ^ a));
+			final long c1 = cl ^ c ^ cr, c2 = (cl & c) | (cr & (cl ^ c));
+			final long b1 = bl ^ br, b2 = bl & br;
+
+			// combine the ones, and count the twos including the carry
+			final long ones = a1 ^ b1 ^ c1;
+			final long carry = (a1 & b1) | (c1 & (a1 ^ b1));
+			final long p = carry ^ a2, q = carry & a2;
+			final long r = b2 ^ c2, t = b2 & c2;
+			final long onetwo = (p ^ r) & ~(q | t);
+
+			long n = onetwo & (ones | b);
+			if( w == words - 1 ) n &= lastmask;
+			next[ row + w ] = n;
 		}
-		
-		// swap grids
-		grid = newgrid;
 	}
-	
+
+	/**
+	 * Returns the word of west neighbours, i.e. every bit holds the state of
+	 * the light to the left of it
+	 *
+	 * @param row The offset of the row in the board, -1 if outside the grid
+	 * @param w The word index
+	 * @return The word of west neighbour states
+	 */
+	private long west( final int row, final int w ) {
+		if( row < 0 ) return 0;
+		final long carry = w > 0 ? board[ row + w - 1 ] >>> 63 : 0;
+		return (board[ row + w ] << 1) | carry;
+	}
+
+	/**
+	 * Returns the word of east neighbours, i.e. every bit holds the state of
+	 * the light to the right of it
+	 *
+	 * @param row The offset of the row in the board, -1 if outside the grid
+	 * @param w The word index
+	 * @return The word of east neighbour states
+	 */
+	private long east( final int row, final int w ) {
+		if( row < 0 ) return 0;
+		final long carry = w < words - 1 ? board[ row + w + 1 ] << 63 : 0;
+		return (board[ row + w ] >>> 1) | carry;
+	}
+
+	/**
+	 * Turns on the four corner lights of the board
+	 *
+	 * @param b The board
+	 */
+	private void setCorners( final long[] b ) {
+		set( b, 0, 0 );
+		set( b, width - 1, 0 );
+		set( b, 0, height - 1 );
+		set( b, width - 1, height - 1 );
+	}
+
+	/**
+	 * Turns on a single light on the board
+	 *
+	 * @param b The board
+	 * @param x The x coordinate of the light
+	 * @param y The y coordinate of the light
+	 */
+	private void set( final long[] b, final int x, final int y ) {
+		b[ y * words + (x >> 6) ] |= 1l << (x & 63);
+	}
+
+	/**
+	 * Checks whether a light is on
+	 *
+	 * @param x The x coordinate of the light
+	 * @param y The y coordinate of the light
+	 * @return True iff the light is on
+	 */
+	public boolean isOn( final int x, final int y ) {
+		return (board[ y * words + (x >> 6) ] & (1l << (x & 63))) != 0;
+	}
+
 	/** @return The count of active lights */
 	public long getLightCount( ) {
-		return grid.count( true );
+		long count = 0;
+		for( final long w : board ) count += Long.bitCount( w );
+		return count;
 	}
-	
+
 	/**
-	 * Creates a new AnimatedGrid from a list of strings that describe the 
+	 * Creates a new AnimatedGrid from a list of strings that describe the
 	 * initial light configuration
-	 * 
+	 *
 	 * @param input The list of strings that describe the initial grid
 	 * @return The AnimatedGrid
 	 */
 	public static AnimatedGrid fromStringList( final List<String> input ) {
-		// create coordinate grid and fix its size
-		final CoordGrid<Boolean> grid = CoordGrid.fromBooleanGrid( input, '#' );
-		grid.fixWindow( );
-		return new AnimatedGrid( grid );
+		final int width = input.stream( ).mapToInt( String::length ).max( ).orElse( 0 );
+		if( width == 0 ) throw new RuntimeException( "Empty light grid" );
+
+		final AnimatedGrid grid = new AnimatedGrid( width, input.size( ) );
+		for( int y = 0; y < input.size( ); y++ ) {
+			final String row = input.get( y );
+			for( int x = 0; x < row.length( ); x++ )
+				if( row.charAt( x ) == '#' ) grid.set( grid.board, x, y );
+		}
+		return grid;
 	}
-	
+
 	/** @return The current grid as string */
 	@Override
 	public String toString( ) {
-		return grid.toString( x -> x ? "#" : "." );
+		final StringBuilder sb = new StringBuilder( (width + 1) * height );
+		for( int y = 0; y < height; y++ ) {
+			if( y > 0 ) sb.append( '\n' );
+			for( int x = 0; x < width; x++ ) sb.append( isOn( x, y ) ? '#' : '.' );
+		}
+		return sb.toString( );
 	}
 }
@@ -3,6 +3,7 @@ package aoc2015.day19;
 import java.util.ArrayList;
 import java.util.List;
 
+import aoc2015.day19.rnrplant.FusionSearch;
 import aoc2015.day19.rnrplant.Molecule;
 import aoc2015.day19.rnrplant.RNRPlant;
 import aocutil.io.FileReader;
@@ -26,11 +27,24 @@ public class Day19 {
 		System.out.println( "Answer : " + part1( input ) );
 
 		System.out.println( "\n---[ Part 2 ]---" );
-		System.out.println( "Example: " + part2( ex_input ) );
-		System.out.println( "Answer : " + part2( input ) );
+		final RNRPlant explant = getPlant( ex_input );
+		System.out.println( "Example: " + part2( explant, ex_input ) );
+		printSearchStatistics( explant );
+		final RNRPlant plant = getPlant( input );
+		System.out.println( "Answer : " + part2( plant, input ) );
+		printSearchStatistics( plant );
 		
 	}
 	
+	/**
+	 * Prints the statistics of the last fusion search of the plant
+	 * 
+	 * @param plant The plant that performed the search
+	 */
+	private static void printSearchStatistics( final RNRPlant plant ) {
+		System.out.println( String.format( "(expanded %d molecules at %.0f expansions/s)", plant.getExpansions( ), plant.getExpansionRate( ) ) );
+	}
+	
 	/**
 	 * 
 	 * @param input 
@@ -48,18 +62,29 @@ public class Day19 {
 	}
 	
 	/**
+	 * Builds the Red-Nosed Reindeer Plant from the rules in the input
 	 * 
-	 * @param input 
-	 * @return 
+	 * @param input The rules, followed by an empty line and the molecule
+	 * @return The plant
 	 */
-	private static long part2( final List<String> input ) {
-		// split the input in a rules and molecule part
-		final List<String> rules = new ArrayList<>( input );
-		final Molecule molecule = Molecule.fromString( rules.remove( rules.size( ) - 1 ) );
-		rules.remove( rules.size( ) - 1 );
-				
-		// now build the Red-Nose Reindeer Plant
-		final RNRPlant plant = RNRPlant.fromStringList( rules );
-		return plant.stepsToGenerate( molecule );
+	private static RNRPlant getPlant( final List<String> input ) {
+		return RNRPlant.fromStringList( input.subList( 0, input.size( ) - 2 ) );
+	}
+	
+	/**
+	 * Determines the number of steps to generate the molecule in the input
+	 * 
+	 * @param plant The plant built from the input
+	 * @param input The rules, followed by an empty line and the molecule
+	 * @return The least number of steps to generate the molecule
+	 */
+	private static long part2( final RNRPlant plant, final List<String> input ) {
+		final Molecule molecule = Molecule.fromString( input.get( input.size( ) - 1 ) );
+		
+		// the greedy search should find the same number of steps as A*
+		final int greedy = plant.stepsToGenerate( molecule, FusionSearch.Mode.Greedy );
+		final int steps = plant.stepsToGenerate( molecule );
+		if( greedy != steps ) throw new RuntimeException( "Greedy search found " + greedy + " steps, A* found " + steps );
+		return steps;
 	}
 }
@@ -0,0 +1,538 @@
+package aoc2015.day19.rnrplant;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Search engine that finds the least number of fission steps to create a
+ * molecule from the e atom by reversing the process, i.e. by fusing the
+ * target molecule back into e. Molecules are encoded as arrays of interned
+ * atom indices and the occurrences of all rule products are found in a single
+ * pass using an Aho-Corasick automaton over the atom alphabet.
+ *
+ * The A* search bounds the remaining steps by a token count in which the Rn
+ * and Ar atoms count zero, Y counts minus one and all other atoms count one.
+ * Every fusion lowers this count by at most the largest drop over all rules.
+ * For the Red-Nosed Reindeer rules every fusion lowers it by exactly one, so
+ * the bound is exact there.
+ *
+ * @author Joris
+ */
+public class FusionSearch {
+	/** The available search modes */
+	public enum Mode {
+		/** Depth-first search that tries the largest reductions first, the first
+		 * solution found is returned */
+		Greedy,
+
+		/** A* search with a lower bound on the remaining steps derived from the
+		 * molecule length and its token count, always returns the least number
+		 * of steps */
+		AStar;
+	}
+
+	/** The atom labels mapped to their index */
+	private final Map<String, Integer> atomids;
+
+	/** The index of the e atom */
+	private final int E;
+
+	/** The atom that every rule fuses into */
+	private final int[] ruleatom;
+
+	/** The product of every rule, i.e. the pattern to search for */
+	private final int[][] products;
+
+	/** The maximal reduction in length by a single fusion step */
+	private final int maxreduction;
+
+	/** The token weight of every atom */
+	private final int[] weight;
+
+	/** The maximal reduction in token count by a single fusion step */
+	private final int maxdrop;
+
+	/** The transitions of the Aho-Corasick automaton per state and atom */
+	private final int[][] delta;
+
+	/** The rules whose product ends in every automaton state */
+	private final int[][] matches;
+
+	/** The maximal number of molecules stored per search, 0 for unlimited */
+	private long limit;
+
+	/** The number of molecules expanded in the last search */
+	private long expansions;
+
+	/** The number of molecules stored in the last search */
+	private long stored;
+
+	/** The duration of the last search, in nanoseconds */
+	private long duration;
+
+	/**
+	 * Creates a new fusion search engine
+	 *
+	 * @param fissionrules The map of fission rules per atom
+	 */
+	public FusionSearch( final Map<Atom, List<Molecule>> fissionrules ) {
+		atomids = new HashMap<>( );
+		E = intern( "e" );
+
+		final List<int[]> prods = new ArrayList<>( );
+		final List<Integer> atoms = new ArrayList<>( );
+		for( final Map.Entry<Atom, List<Molecule>> r : fissionrules.entrySet( ) )
+			for( final Molecule m : r.getValue( ) ) {
+				atoms.add( intern( r.getKey( ).toString( ) ) );
+				prods.add( encode( m ) );
+			}
+		ruleatom = atoms.stream( ).mapToInt( Integer::intValue ).toArray( );
+		products = prods.toArray( new int[ 0 ][ ] );
+		maxreduction = Math.max( 1, prods.stream( ).mapToInt( p -> p.length - 1 ).max( ).orElse( 1 ) );
+
+		// token weights of the atoms and the largest drop in tokens per fusion
+		weight = new int[ atomids.size( ) ];
+		for( final Map.Entry<String, Integer> a : atomids.entrySet( ) ) {
+			switch( a.getKey( ) ) {
+				case "Rn": case "Ar": weight[ a.getValue( ) ] = 0; break;
+				case "Y": weight[ a.getValue( ) ] = -1; break;
+				default: weight[ a.getValue( ) ] = 1;
+			}
+		}
+		int drop = 0;
+		for( int r = 0; r < products.length; r++ ) drop = Math.max( drop, getTokens( products[r] ) - weight[ ruleatom[r] ] );
+		maxdrop = drop;
+
+		// build the automaton trie
+		final int A = atomids.size( );
+		final List<int[]> trie = new ArrayList<>( );
+		final List<List<Integer>> out = new ArrayList<>( );
+		trie.add( newState( A ) ); out.add( new ArrayList<>( ) );
+		for( int p = 0; p < products.length; p++ ) {
+			int s = 0;
+			for( final int a : products[p] ) {
+				if( trie.get( s )[a] == -1 ) {
+					trie.get( s )[a] = trie.size( );
+					trie.add( newState( A ) ); out.add( new ArrayList<>( ) );
+				}
+				s = trie.get( s )[a];
+			}
+			out.get( s ).add( p );
+		}
+
+		// complete the transitions and outputs using the failure links, in
+		// breadth-first order
+		delta = trie.toArray( new int[ 0 ][ ] );
+		final int[] fail = new int[ delta.length ];
+		final int[] queue = new int[ delta.length ];
+		int head = 0, tail = 0;
+		for( int a = 0; a < A; a++ ) {
+			if( delta[0][a] == -1 ) delta[0][a] = 0;
+			else queue[ tail++ ] = delta[0][a];
+		}
+		while( head < tail ) {
+			final int s = queue[ head++ ];
+			out.get( s ).addAll( out.get( fail[s] ) );
+			for( int a = 0; a < A; a++ ) {
+				final int t = delta[s][a];
+				if( t == -1 ) {
+					delta[s][a] = delta[ fail[s] ][a];
+				} else {
+					fail[t] = delta[ fail[s] ][a];
+					queue[ tail++ ] = t;
+				}
+			}
+		}
+		matches = new int[ delta.length ][];
+		for( int s = 0; s < delta.length; s++ ) matches[s] = out.get( s ).stream( ).mapToInt( Integer::intValue ).toArray( );
+
+		limit = 0;
+	}
+
+	/**
+	 * Creates a new automaton state without transitions
+	 *
+	 * @param A The alphabet size
+	 * @return The transition array of the state
+	 */
+	private static int[] newState( final int A ) {
+		final int[] s = new int[ A ];
+		Arrays.fill( s, -1 );
+		return s;
+	}
+
+	/**
+	 * Looks up the index of the atom, registers it if it is new
+	 *
+	 * @param label The atom label
+	 * @return The atom index
+	 */
+	private int intern( final String label ) {
+		return atomids.computeIfAbsent( label, x -> atomids.size( ) );
+	}
+
+	/**
+	 * Encodes the molecule as array of atom indices
+	 *
+	 * @param molecule The molecule
+	 * @return The encoded molecule
+	 */
+	private int[] encode( final Molecule molecule ) {
+		final int[] enc = new int[ molecule.size( ) ];
+		for( int i = 0; i < enc.length; i++ ) enc[i] = intern( molecule.getAtoms( ).get( i ).toString( ) );
+		return enc;
+	}
+
+	/**
+	 * Sets the maximal number of molecules that a search may store in its
+	 * queue, stack or visited set, which bounds its memory use
+	 *
+	 * @param limit The storage limit, 0 for unlimited
+	 */
+	public void setStorageLimit( final long limit ) {
+		this.limit = limit;
+	}
+
+	/** @return The number of molecules expanded by the last search */
+	public long getExpansions( ) {
+		return expansions;
+	}
+
+	/** @return The number of expansions per second in the last search */
+	public double getExpansionRate( ) {
+		if( duration == 0 ) return 0;
+		return expansions / (duration / 1000000000.0);
+	}
+
+	/**
+	 * Determines the number of fission steps required to produce the target
+	 * molecule from the e atom
+	 *
+	 * @param target The target molecule
+	 * @param mode The search mode to use
+	 * @return The number of steps, -1 if the molecule cannot be produced
+	 */
+	public int search( final Molecule target, final Mode mode ) {
+		// atoms that do not occur in any of the rules can never be fused
+		for( final Atom a : target ) {
+			if( !atomids.containsKey( a.toString( ) ) ) return -1;
+		}
+
+		expansions = 0;
+		stored = 0;
+		final long t0 = System.nanoTime( );
+		try {
+			switch( mode ) {
+				case Greedy: return greedy( encode( target ) );
+				case AStar: return astar( encode( target ) );
+				default: throw new RuntimeException( "Unsupported search mode: " + mode );
+			}
+		} finally {
+			duration = System.nanoTime( ) - t0;
+		}
+	}
+
+	/**
+	 * Greedy depth-first fusion that backtracks on dead ends. The search keeps
+	 * its own stack of molecules, so that long fusion paths do not overflow
+	 * the call stack.
+	 *
+	 * @param target The target molecule
+	 * @return The number of steps to fuse the molecule into e, -1 if it is not
+	 *   possible
+	 */
+	private int greedy( final int[] target ) {
+		if( target.length == 1 && target[0] == E ) return 0;
+
+		final Set<Key> visited = new HashSet<>( );
+		final Deque<Frame> stack = new ArrayDeque<>( );
+		visited.add( new Key( target ) );
+		store( );
+		expand( );
+		stack.push( new Frame( target, getGreedyOptions( target ) ) );
+
+		while( !stack.isEmpty( ) ) {
+			final Frame f = stack.peek( );
+			if( f.next == f.options.size( ) ) {
+				stack.pop( );
+				continue;
+			}
+
+			// the molecule on top of the stack is stack.size( ) - 1 steps away
+			// from the target
+			final int[] o = f.options.get( f.next++ );
+			final int[] mol = fuse( f.mol, o[0], o[1] );
+			if( mol.length == 1 && mol[0] == E ) return stack.size( );
+			if( !visited.add( new Key( mol ) ) ) continue;
+			store( );
+			expand( );
+			stack.push( new Frame( mol, getGreedyOptions( mol ) ) );
+		}
+		return -1;
+	}
+
+	/**
+	 * Finds the fusions of the molecule in the order the greedy search tries
+	 * them: the largest reductions first, rightmost occurrences breaking ties
+	 *
+	 * @param mol The molecule
+	 * @return The sorted list of fusion options
+	 */
+	private List<int[]> getGreedyOptions( final int[] mol ) {
+		final List<int[]> options = findFusions( mol );
+		options.sort( (a, b) -> products[ a[1] ].length != products[ b[1] ].length ? products[ b[1] ].length - products[ a[1] ].length : b[0] - a[0] );
+		return options;
+	}
+
+	/**
+	 * A* search over the fusion steps, bounded below by the remaining number
+	 * of steps as computed by bound. Ties are broken in favour of the most
+	 * recently queued molecule, and the fusions of a molecule are queued in
+	 * reverse greedy order. When the bound is exact, A* therefore follows the
+	 * greedy search and does not explore all molecules of equal estimate.
+	 *
+	 * @param target The target molecule
+	 * @return The least number of steps, -1 if it cannot be produced
+	 */
+	private int astar( final int[] target ) {
+		final Map<Key, Integer> best = new HashMap<>( );
+		final PriorityQueue<Node> Q = new PriorityQueue<>( );
+		long seq = 0;
+		Q.add( new Node( target, 0, bound( target ), seq++ ) );
+		best.put( new Key( target ), 0 );
+		store( );
+
+		while( !Q.isEmpty( ) ) {
+			final Node n = Q.poll( );
+			if( n.steps > best.get( n.key ) ) continue;
+			if( n.key.atoms.length == 1 && n.key.atoms[0] == E ) return n.steps;
+			expand( );
+
+			final List<int[]> options = getGreedyOptions( n.key.atoms );
+			for( int i = options.size( ) - 1; i >= 0; i-- ) {
+				final int[] o = options.get( i );
+				final int[] mol = fuse( n.key.atoms, o[0], o[1] );
+				final Key k = new Key( mol );
+				final Integer prev = best.get( k );
+				if( prev != null && prev <= n.steps + 1 ) continue;
+				best.put( k, n.steps + 1 );
+				store( );
+				Q.add( new Node( k, n.steps + 1, n.steps + 1 + bound( mol ), seq++ ) );
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Computes a lower bound on the number of steps to fuse the molecule into
+	 * e. Every step reduces the molecule length by at most the longest rule
+	 * product minus one, and the token count by at most the largest drop of
+	 * any rule.
+	 *
+	 * @param mol The molecule
+	 * @return The lower bound
+	 */
+	private int bound( final int[] mol ) {
+		if( mol.length == 1 ) return mol[0] == E ? 0 : 1;
+		final int lenbound = (mol.length - 1 + maxreduction - 1) / maxreduction;
+		final int tokens = getTokens( mol ) - weight[ E ];
+		if( tokens <= 0 || maxdrop <= 0 ) return lenbound;
+		return Math.max( lenbound, (tokens + maxdrop - 1) / maxdrop );
+	}
+
+	/**
+	 * Counts the tokens of the molecule
+	 *
+	 * @param mol The molecule
+	 * @return The sum of the token weights of its atoms
+	 */
+	private int getTokens( final int[] mol ) {
+		int tokens = 0;
+		for( final int a : mol ) tokens += weight[ a ];
+		return tokens;
+	}
+
+	/**
+	 * Registers an expansion
+	 */
+	private void expand( ) {
+		expansions++;
+	}
+
+	/**
+	 * Registers a stored molecule and checks it against the limit
+	 */
+	private void store( ) {
+		if( ++stored > limit && limit > 0 ) throw new RuntimeException( "Exceeded the storage limit of " + limit + " molecules" );
+	}
+
+	/**
+	 * Finds all fusions that can be applied to the molecule, scanning it once
+	 * using the automaton
+	 *
+	 * @param mol The molecule
+	 * @return List of fusion options as pairs of start position and rule index
+	 */
+	private List<int[]> findFusions( final int[] mol ) {
+		final List<int[]> options = new ArrayList<>( );
+		int s = 0;
+		for( int i = 0; i < mol.length; i++ ) {
+			s = delta[s][ mol[i] ];
+			for( final int r : matches[s] ) {
+				// fusion into e is only possible for the entire molecule
+				if( ruleatom[r] == E && products[r].length != mol.length ) continue;
+				options.add( new int[] { i - products[r].length + 1, r } );
+			}
+		}
+		return options;
+	}
+
+	/**
+	 * Applies a fusion rule to the molecule
+	 *
+	 * @param mol The molecule
+	 * @param start The start position of the rule product
+	 * @param rule The rule index
+	 * @return The new molecule
+	 */
+	private int[] fuse( final int[] mol, final int start, final int rule ) {
+		final int len = products[ rule ].length;
+		final int[] res = new int[ mol.length - len + 1 ];
+		System.arraycopy( mol, 0, res, 0, start );
+		res[ start ] = ruleatom[ rule ];
+		System.arraycopy( mol, start + len, res, start + 1, mol.length - start - len );
+		return res;
+	}
+
+	/**
+	 * Hash key of an encoded molecule
+	 */
+	private static class Key {
+		/** The encoded atoms */
+		private final int[] atoms;
+
+		/** The pre-computed hash code */
+		private final int hash;
+
+		/**
+		 * Creates a new key
+		 *
+		 * @param atoms The encoded atoms
+		 */
+		private Key( final int[] atoms ) {
+			this.atoms = atoms;
+			this.hash = Arrays.hashCode( atoms );
+		}
+
+		/** @return The hash code of the atom sequence */
+		@Override
+		public int hashCode( ) {
+			return hash;
+		}
+
+		/**
+		 * Checks whether the other key holds the same atom sequence
+		 *
+		 * @param obj The object to compare against
+		 * @return True iff the obj is a key with the same sequence
+		 */
+		@Override
+		public boolean equals( final Object obj ) {
+			if( !(obj instanceof Key) ) return false;
+			final Key k = (Key)obj;
+			return hash == k.hash && Arrays.equals( atoms, k.atoms );
+		}
+	}
+
+	/**
+	 * A molecule on the stack of the greedy search
+	 */
+	private static class Frame {
+		/** The encoded molecule */
+		private final int[] mol;
+
+		/** The fusion options of the molecule in the order they are tried */
+		private final List<int[]> options;
+
+		/** The index of the next option to try */
+		private int next;
+
+		/**
+		 * Creates a new stack frame
+		 *
+		 * @param mol The encoded molecule
+		 * @param options The fusion options to try
+		 */
+		private Frame( final int[] mol, final List<int[]> options ) {
+			this.mol = mol;
+			this.options = options;
+			this.next = 0;
+		}
+	}
+
+	/**
+	 * A search node of the A* search
+	 */
+	private static class Node implements Comparable<Node> {
+		/** The molecule key */
+		private final Key key;
+
+		/** The number of steps taken to reach the molecule */
+		private final int steps;
+
+		/** The estimated total number of steps */
+		private final int estimate;
+
+		/** The sequence number of the node in the order it was queued */
+		private final long seq;
+
+		/**
+		 * Creates a new node
+		 *
+		 * @param mol The encoded molecule
+		 * @param steps The steps taken
+		 * @param estimate The estimated total
+		 * @param seq The sequence number of the node
+		 */
+		private Node( final int[] mol, final int steps, final int estimate, final long seq ) {
+			this( new Key( mol ), steps, estimate, seq );
+		}
+
+		/**
+		 * Creates a new node
+		 *
+		 * @param key The molecule key
+		 * @param steps The steps taken
+		 * @param estimate The estimated total
+		 * @param seq The sequence number of the node
+		 */
+		private Node( final Key key, final int steps, final int estimate, final long seq ) {
+			this.key = key;
+			this.steps = steps;
+			this.estimate = estimate;
+			this.seq = seq;
+		}
+
+		/**
+		 * Orders nodes by estimate, preferring the deepest and then the most
+		 * recently queued nodes on ties
+		 *
+		 * @param n The other node
+		 * @return The comparison result
+		 */
+		@Override
+		public int compareTo( final Node n ) {
+			if( estimate != n.estimate ) return Integer.compare( estimate, n.estimate );
+			if( steps != n.steps ) return Integer.compare( n.steps, steps );
+			return Long.compare( n.seq, seq );
+		}
+	}
+}
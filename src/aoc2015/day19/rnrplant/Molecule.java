@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -87,13 +88,13 @@ public class Molecule implements Iterable<Atom> {
 	 */
 	
 	public List<Molecule> fusion( final Map<Atom, List<Molecule>> fissionrules ) {
-		List<Molecule> results = new ArrayList<>( );
+		final Set<Molecule> results = new LinkedHashSet<>( );
+		final String molstring = toString( );
 		
 		// try to reverse each of the fission rules
 		for( final Atom resatom : fissionrules.keySet( ) ) {			
 			// check if any of the result molecules is present in this one
 			for( final Molecule resmol : fissionrules.get( resatom ) ) {
-				final String molstring = toString( );
 				final String repstring = resmol.toString( );
 				
 				if( !molstring.contains( repstring.toString( ) ) ) continue;
@@ -105,13 +106,13 @@ public class Molecule implements Iterable<Atom> {
 				int idx = -1;
 				while( (idx = molstring.indexOf( repstring, idx + 1)) != -1) {
 					final Molecule newmol = Molecule.fromString( molstring.substring( 0, idx ) + resatom + molstring.substring( idx + repstring.length( ) ) );
-					if( !results.contains( newmol ) ) results.add( newmol );
+					results.add( newmol );
 					idx += repstring.length( );
 				}
 			}			
 		}
 		
-		return results;
+		return new ArrayList<>( results );
 	}
 	
 	/** @return True if this molecule only consists of the e atom */
@@ -160,8 +161,8 @@ public class Molecule implements Iterable<Atom> {
 		if( obj == null || !(obj instanceof Molecule) ) return false;
 		final Molecule m = (Molecule)obj;
 		
-		// simply compare pre-computed hash codes, they must be equal for unique lists of atoms
-		return hashCode( ) == m.hashCode( );
+		// compare the pre-computed hash codes first to quickly rule out most molecules
+		return hashCode( ) == m.hashCode( ) && atoms.equals( m.atoms );
 	}
 	
 	/** @return The hash code of the string that is a unique configuration of atoms */
@@ -14,6 +14,9 @@ public class RNRPlant {
 	/** The rules for the nuclear fission process */
 	private final Map<Atom, List<Molecule>> fissionrules;
 	
+	/** The fusion search engine, created on demand */
+	private FusionSearch search;
+	
 	/**
 	 * Creates a new RNRPlant
 	 * 
@@ -36,51 +39,47 @@ public class RNRPlant {
 		return mol.fission( fissionrules ).size( );
 	}
 	
+	/**
+	 * Determines the least number of fission steps that is required to produce
+	 * the target molecule from the e atom, using the A* fusion search
+	 * 
+	 * @param target The target molecule
+	 * @return The number of fission steps
+	 */
 	public int stepsToGenerate( final Molecule target ) {
-		final Map<Molecule, Integer> M = new HashMap<>( );
-		final StepCounter steps = new StepCounter( );
-		return fusion( M, target, steps, 0 );
+		return stepsToGenerate( target, FusionSearch.Mode.AStar );
 	}
-
-	private int fusion( final Map<Molecule, Integer> M, final Molecule current, final StepCounter steps, final int currstep ) {
-		// have we tried to fuse this molecule before?
-		if( M.containsKey( current ) ) {
-			// return the current step plus the required extra steps from this molecule onward
-			final int cached = M.get( current );
-			return cached != Integer.MAX_VALUE ? currstep + cached : cached;
-		}
-					
-		// did we overshoot?
-		if( current.size( ) <= 0 || currstep >= steps.best  ) {
-			M.put( current, Integer.MAX_VALUE );
-			return Integer.MAX_VALUE;
-		}
-		
-		// no, but are we there yet?
-		if( current.isE( ) ) {
-			System.err.println( "New best solution: " + currstep );
-			steps.best = currstep;
-			return currstep;
-		}
-		
-		// get all possible new molecules we can generate by nuclear fusion
-		// continue fusion process for all new molecules until we found the e atom
-		// in the least number of steps
-		final List<Molecule> molecules = current.fusion( fissionrules );		
-		int minsteps = Integer.MAX_VALUE;
-		for( final Molecule mol : molecules ) {
-			final int beststeps = fusion( M, mol, steps, currstep + 1 );
-			if( beststeps < minsteps ) minsteps = beststeps;			
-		}
-		
-		// update global minimum if possible
-		if( minsteps < steps.best ) steps.best = minsteps;
-		
-		// store the result we have found for future reuse
-		M.put( current, minsteps );
-		return minsteps;
+	
+	/**
+	 * Determines the number of fission steps that is required to produce the
+	 * target molecule from the e atom. Only the AStar mode guarantees the least
+	 * number of steps.
+	 * 
+	 * @param target The target molecule
+	 * @param mode The search mode to use
+	 * @return The number of fission steps
+	 */
+	public int stepsToGenerate( final Molecule target, final FusionSearch.Mode mode ) {
+		final int steps = getFusionSearch( ).search( target, mode );
+		if( steps < 0 ) throw new RuntimeException( "Molecule " + target + " cannot be generated" );
+		return steps;
 	}
 	
+	/** @return The number of molecules expanded by the last search */
+	public long getExpansions( ) {
+		return search != null ? search.getExpansions( ) : 0;
+	}
+	
+	/** @return The number of expansions per second in the last search */
+	public double getExpansionRate( ) {
+		return search != null ? search.getExpansionRate( ) : 0;
+	}
+	
+	/** @return The fusion search engine for the rules of this plant */
+	public FusionSearch getFusionSearch( ) {
+		if( search == null ) search = new FusionSearch( fissionrules );
+		return search;
+	}
 	
 	/**
 	 * Builds a new RNRPlant from a list of strings that describe the fission
@@ -113,8 +112,4 @@ public class RNRPlant {
 		return fissionrules.toString( );
 	}
 	
-	private class StepCounter {
-		/** The number of steps required */
-		protected int best = Integer.MAX_VALUE;
-	}
 }
@@ -1,124 +1,112 @@
 package aoc2015.day20;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Stack;
+import java.util.stream.IntStream;
 
 /**
  * Class that determines the presents a house will get, given infinite elves
  * such that each elf xn delivers presents to all houses n + 2n + 3n + ...
- * 
+ *
+ * The presents are accumulated by a segmented sieve: the house numbers are
+ * processed in blocks and for every block each divisor pair (k, m) with k <= m
+ * of its houses is enumerated once, by iterating the multiples of k within the
+ * block. Blocks are sieved in parallel, in rounds of increasing house numbers,
+ * until a round contains a house that receives enough presents.
+ *
  * @author Joris
  */
 public class PresentDelivery {
-	
+	/** The number of houses per sieve block */
+	private static final int BLOCK_SIZE = 1 << 16;
+
+	/** The per-thread present accumulators */
+	private static final ThreadLocal<long[]> buffers = ThreadLocal.withInitial( ( ) -> new long[ BLOCK_SIZE ] );
+
 	/**
 	 * Determines the first house to get the specified number of presents
-	 * 
+	 *
 	 * @param presents The number of presents that the house is to receive
-	 * @param maxhouses The maximum number of houses that the elves will visit
+	 * @param maxhouses The maximum number of houses that the elves will visit,
+	 *   -1 for no maximum. If a maximum is set, every elf delivers 11 presents
+	 *   per house instead of 10
 	 * @return The first house number that has received at least the specified
 	 *   number of presents
 	 */
 	public static int getFirstHouseToGet( final long presents, final int maxhouses ) {
-		// simply try next house number until we found the required amount of
-		// presents
-		long currpresents = 0;
-		int house = 0;
-		while( currpresents < presents ) {
-			currpresents = getPresentsForHouse( ++house, maxhouses );
-			if( house % 10000 == 0 ) System.out.println( house + ": " + currpresents );
-		}
-		return house;
-	}
-	
-	/**
-	 * Determines the number of presents the house with the given number will
-	 * receive from all elves that visit the house.
-	 * 
-	 * @param house The house number
-	 * @param maxhouses The maximum number of houses visited by the elves
-	 * @return The number of presents that the house will receive
-	 */
-	private static long getPresentsForHouse( final int house, final int maxhouses ) {
-		// find and all non-fractional divisors of the house number, this list
-		// equals the intervals of the visiting elves
-		if( maxhouses == -1 )
-			// no maximum number of visits, return all divisors times 10
-			return calcPresents( house, -1, 10 );
-		else
-			// with a maximum number of visits, we are only interested in the
-			// divisors up to the limit of visits. We do give them 11 presents per
-			// visit though...
-			return findIntegerDivisors( house, maxhouses ).stream( ).map( x -> house / x ).reduce( Math::addExact ).get( ) * 11;
-	}
-	
-	private static long calcPresents( final long number, long maxdivisor, final long numpresents ) {
-		// collections containing the lower and upper half of all integer divisors
-		long presents = 0;
+		final int perelf = maxhouses == -1 ? 10 : 11;
+		final long cap = maxhouses == -1 ? Long.MAX_VALUE : maxhouses;
+		if( presents <= perelf ) return 1;
 
-		// set limit to the number if not specified
-		if( maxdivisor <= 0 ) maxdivisor = number;
+		// the elf with the same number as the house alone delivers enough
+		final long limit = (presents + perelf - 1) / perelf;
+		if( limit > Integer.MAX_VALUE ) throw new RuntimeException( "Number of presents is too large: " + presents );
 
-		// start with 0 and an unbounded upper
-		long l = 0;
-		long u = Long.MAX_VALUE;
-		
-		// then increase the lower value until we have reached halfway (or the max)
-		while( l < u ) {
-			l++;
-			
-			if( l > maxdivisor ) break;
+		final int blocks = Runtime.getRuntime( ).availableProcessors( ) * 2;
+		for( long base = getLowerBound( presents, perelf ); base <= limit; base += (long)blocks * BLOCK_SIZE ) {
+			final long roundbase = base;
+			final long house = IntStream.range( 0, blocks ).parallel( ).mapToLong( b -> {
+				final long lo = roundbase + (long)b * BLOCK_SIZE;
+				if( lo > limit ) return Long.MAX_VALUE;
+				return sieveBlock( lo, Math.min( lo + BLOCK_SIZE, limit + 1 ), presents, perelf, cap );
+			} ).min( ).getAsLong( );
 
-			// integer division?
-			if( number % l == 0 ) {
-				presents += (l+u) * numpresents;
-				u = number / l;
-			}
+			if( house != Long.MAX_VALUE ) return (int)house;
 		}
-		return presents;
+
+		// should not happen because of the limit
+		throw new RuntimeException( "Failed to find a house that receives " + presents + " presents" );
 	}
-	
+
 	/**
-	 * Simple algorithm to find all divisors of a number that, when divided by
-	 * the number, result in an integer value. May include some numbers twice if 
-	 * 
-	 * @param number The number to find integer divisors for
-	 * @param maxdivisor The maximum value of the divisor, the algorithm stops
-	 *   once this value has been reached. If this value is not a positive
-	 *   number, all divisors will be returned
-	 * @return
+	 * Determines a lower bound on the first house that can receive the number
+	 * of presents, using Robin's unconditional bound on the sum of divisors:
+	 * sigma(n) < e^gamma n ln ln n + 0.6483 n / ln ln n for all n >= 3
+	 *
+	 * @param presents The number of presents that the house is to receive
+	 * @param perelf The number of presents delivered by an elf per house
+	 * @return The house number from which the search can start
 	 */
-	public static List<Long> findIntegerDivisors( final long number, long maxdivisor ) {
-		// collections containing the lower and upper half of all integer divisors
-		final List<Long> lower = new ArrayList<>( );
-		final Stack<Long> upper = new Stack<>( );
-
-		// set limit to the number if not specified
-		if( maxdivisor <= 0 ) maxdivisor = number;
+	private static long getLowerBound( final long presents, final int perelf ) {
+		final double sigma = (double)presents / perelf;
+		long lo = 3, hi = (long)Math.ceil( sigma );
+		if( hi <= lo ) return 1;
+		while( lo < hi ) {
+			final long n = (lo + hi) / 2;
+			final double lnln = Math.log( Math.log( n ) );
+			if( n * (Math.exp( 0.5772156649 ) * lnln + 0.6483 / lnln) >= sigma ) hi = n;
+			else lo = n + 1;
+		}
+		return lo;
+	}
 
-		// start with 1 and the number itself
-		long l = 1;
-		lower.add( l );
-		upper.push( number );
-		
-		// then increase the lower value until we have reached halfway (or the max)
-		while( l < upper.peek( ) ) {
-			l++;
-			
-			if( l > maxdivisor ) break;
+	/**
+	 * Sieves a single block of houses and returns the first house that receives
+	 * at least the required number of presents
+	 *
+	 * @param lo The first house of the block
+	 * @param hi The end of the block (exclusive)
+	 * @param presents The number of presents to receive
+	 * @param perelf The number of presents delivered by an elf per house
+	 * @param cap The maximal number of houses visited per elf
+	 * @return The first qualifying house in the block, Long.MAX_VALUE if none
+	 */
+	private static long sieveBlock( final long lo, final long hi, final long presents, final int perelf, final long cap ) {
+		final long[] acc = buffers.get( );
+		final int size = (int)(hi - lo);
+		for( int i = 0; i < size; i++ ) acc[ i ] = 0;
 
-			// integer division?
-			if( number % l == 0 ) {
-				final long u = number / l;
-				lower.add( l );
-				upper.push( u );
+		// every house h = k * m with k <= m receives presents from elves k and m,
+		// as long as they have not yet reached their visit cap
+		for( long k = 1; k * k < hi; k++ ) {
+			long m = Math.max( k, (lo + k - 1) / k );
+			for( long h = k * m; h < hi; h += k, m++ ) {
+				long sum = m <= cap ? k : 0;
+				if( m != k && k <= cap ) sum += m;
+				acc[ (int)(h - lo) ] += sum;
 			}
 		}
 
-		// done, merge two collections into a single one (if no maximum is used)
-		while( !upper.empty( ) && upper.peek( ) < maxdivisor ) lower.add( upper.pop( ) );
-		return lower;
+		for( int i = 0; i < size; i++ )
+			if( acc[ i ] * perelf >= presents ) return lo + i;
+		return Long.MAX_VALUE;
 	}
-
 }
@@ -0,0 +1,265 @@
+package aoc2015.day21.rpg;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import aoc2015.day21.rpg.RPGItem.RPGItemType;
+
+/**
+ * Optimiser that finds the cheapest winning or most expensive losing loadout
+ * of shop items for the player. The battle outcome follows directly from the
+ * stat totals, by comparing the number of turns both characters need to kill
+ * the other. Loadouts are enumerated in order of their total cost, combining
+ * the per-type item selections best-first, such that the search stops at the
+ * first loadout with the desired outcome.
+ *
+ * @author Joris
+ */
+public class LoadoutOptimiser {
+	/** The items available per item type */
+	private final Map<RPGItemType, List<RPGItem>> items;
+
+	/** The minimal and maximal number of items that can be equipped per type */
+	private final Map<RPGItemType, int[]> slots;
+
+	/**
+	 * Creates a new optimiser for the items in the shop, using the default
+	 * equipment rules: exactly one weapon, at most one armour and at most two
+	 * rings
+	 *
+	 * @param shop The shop that sells the items
+	 */
+	public LoadoutOptimiser( final RPGShop shop ) {
+		items = new EnumMap<>( RPGItemType.class );
+		slots = new EnumMap<>( RPGItemType.class );
+		for( final RPGItemType type : RPGItemType.values( ) ) {
+			final List<RPGItem> it = new ArrayList<>( shop.getItems( type ) );
+			it.sort( Comparator.comparing( RPGItem::toString ) );
+			items.put( type, it );
+		}
+
+		setSlots( RPGItemType.Weapon, 1, 1 );
+		setSlots( RPGItemType.Armour, 0, 1 );
+		setSlots( RPGItemType.Ring, 0, 2 );
+	}
+
+	/**
+	 * Sets the number of items of the given type that can be equipped
+	 *
+	 * @param type The item type
+	 * @param min The minimal number of items of the type
+	 * @param max The maximal number of items of the type
+	 */
+	public void setSlots( final RPGItemType type, final int min, final int max ) {
+		if( min < 0 || max < min ) throw new IllegalArgumentException( "Invalid slot range: " + min + " - " + max );
+		slots.put( type, new int[] { min, max } );
+	}
+
+	/**
+	 * Determines whether the player defeats the boss. The player strikes first,
+	 * hence wins if it needs at most as many turns to kill the boss as the boss
+	 * needs to kill the player.
+	 *
+	 * @param playerhp The player hit points
+	 * @param playerdmg The total player damage
+	 * @param playerarmour The total player armour
+	 * @param boss The boss character
+	 * @return True iff the player wins the battle
+	 */
+	public static boolean playerWins( final int playerhp, final int playerdmg, final int playerarmour, final RPGChar boss ) {
+		final int playerhit = Math.max( playerdmg - boss.getArmour( ), 1 );
+		final int bosshit = Math.max( boss.getDamage( ) - playerarmour, 1 );
+		final int playerturns = (boss.getHP( ) + playerhit - 1) / playerhit;
+		final int bossturns = (playerhp + bosshit - 1) / bosshit;
+		return playerturns <= bossturns;
+	}
+
+	/**
+	 * Finds the cheapest loadout with which the player defeats the boss
+	 *
+	 * @param player The player character, without items
+	 * @param boss The boss character
+	 * @param budget The maximal amount of gold to spend
+	 * @return The cheapest winning loadout, null if there is none within the
+	 *   budget
+	 */
+	public Loadout findCheapestWin( final RPGChar player, final RPGChar boss, final int budget ) {
+		return search( player, boss, true, budget );
+	}
+
+	/**
+	 * Finds the most expensive loadout with which the player still loses
+	 *
+	 * @param player The player character, without items
+	 * @param boss The boss character
+	 * @return The most expensive losing loadout, null if the player always wins
+	 */
+	public Loadout findMostExpensiveLoss( final RPGChar player, final RPGChar boss ) {
+		return search( player, boss, false, Integer.MAX_VALUE );
+	}
+
+	/**
+	 * Enumerates loadouts in order of cost and returns the first with the
+	 * desired outcome
+	 *
+	 * @param player The player character
+	 * @param boss The boss character
+	 * @param win True to find the cheapest win, false for the most expensive
+	 *   loss
+	 * @param budget The maximal cost of the loadout
+	 * @return The first loadout with the desired outcome, null if there is none
+	 */
+	private Loadout search( final RPGChar player, final RPGChar boss, final boolean win, final int budget ) {
+		// the outcome only depends on the stat totals, so only the cheapest (or
+		// most expensive) selection per damage and armour value is kept
+		final List<Loadout[]> selections = new ArrayList<>( );
+		for( final RPGItemType type : RPGItemType.values( ) ) {
+			final Map<Long, Loadout> best = new HashMap<>( );
+			for( final Loadout l : getSelections( type ) ) {
+				final long key = ((long)l.damage << 32) | (l.armour & 0xFFFFFFFFl);
+				final Loadout prev = best.get( key );
+				if( prev == null || (win ? l.cost < prev.cost : l.cost > prev.cost) ) best.put( key, l );
+			}
+			if( best.isEmpty( ) ) return null;
+
+			final Loadout[] sel = best.values( ).toArray( new Loadout[ 0 ] );
+			Arrays.sort( sel, win ? Comparator.comparingInt( (Loadout l) -> l.cost ) : Comparator.comparingInt( (Loadout l) -> -l.cost ) );
+			selections.add( sel );
+		}
+
+		// enumerate the combinations of selections in order of total cost
+		final int K = selections.size( );
+		final PriorityQueue<int[]> Q = new PriorityQueue<>( Comparator.comparingInt( (int[] c) -> win ? c[K] : -c[K] ) );
+		final Set<List<Integer>> seen = new HashSet<>( );
+		final int[] start = new int[ K + 1 ];
+		for( int k = 0; k < K; k++ ) start[K] += selections.get( k )[0].cost;
+		Q.add( start );
+		seen.add( key( start ) );
+
+		while( !Q.isEmpty( ) ) {
+			final int[] c = Q.poll( );
+			if( win && c[K] > budget ) return null;
+
+			int dmg = player.getDamage( ), arm = player.getArmour( );
+			for( int k = 0; k < K; k++ ) {
+				dmg += selections.get( k )[ c[k] ].damage;
+				arm += selections.get( k )[ c[k] ].armour;
+			}
+			if( playerWins( player.getHP( ), dmg, arm, boss ) == win && c[K] <= budget ) {
+				final List<RPGItem> chosen = new ArrayList<>( );
+				for( int k = 0; k < K; k++ ) chosen.addAll( selections.get( k )[ c[k] ].items );
+				return new Loadout( chosen );
+			}
+
+			// try the next selection for every item type
+			for( int k = 0; k < K; k++ ) {
+				final Loadout[] sel = selections.get( k );
+				if( c[k] + 1 >= sel.length ) continue;
+				final int[] next = Arrays.copyOf( c, K + 1 );
+				next[k]++;
+				next[K] += sel[ next[k] ].cost - sel[ c[k] ].cost;
+				if( seen.add( key( next ) ) ) Q.add( next );
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Creates a hashable key from the selection indices of a combination
+	 *
+	 * @param comb The combination, its last element holds the cost
+	 * @return The list of selection indices
+	 */
+	private static List<Integer> key( final int[] comb ) {
+		final List<Integer> key = new ArrayList<>( comb.length - 1 );
+		for( int i = 0; i < comb.length - 1; i++ ) key.add( comb[i] );
+		return key;
+	}
+
+	/**
+	 * Generates all valid selections of items of the given type
+	 *
+	 * @param type The item type
+	 * @return The list of selections, each as partial loadout
+	 */
+	private List<Loadout> getSelections( final RPGItemType type ) {
+		final List<Loadout> result = new ArrayList<>( );
+		final int[] range = slots.get( type );
+		generate( result, items.get( type ), new ArrayList<>( ), 0, range[0], range[1] );
+		return result;
+	}
+
+	/**
+	 * Recursively generates all combinations of distinct items
+	 *
+	 * @param result The list of selections generated so far
+	 * @param available The available items
+	 * @param current The current selection
+	 * @param idx The index of the next item to consider
+	 * @param min The minimal number of items in a selection
+	 * @param max The maximal number of items in a selection
+	 */
+	private static void generate( final List<Loadout> result, final List<RPGItem> available, final List<RPGItem> current, final int idx, final int min, final int max ) {
+		if( current.size( ) >= min ) result.add( new Loadout( current ) );
+		if( current.size( ) == max ) return;
+
+		for( int i = idx; i < available.size( ); i++ ) {
+			current.add( available.get( i ) );
+			generate( result, available, current, i + 1, min, max );
+			current.remove( current.size( ) - 1 );
+		}
+	}
+
+	/**
+	 * A set of items and their combined stats
+	 */
+	public static class Loadout {
+		/** The items in the loadout */
+		private final List<RPGItem> items;
+
+		/** The total cost */
+		private final int cost;
+
+		/** The total damage and armour bonus */
+		private final int damage, armour;
+
+		/**
+		 * Creates a new loadout of the given items
+		 *
+		 * @param items The items
+		 */
+		private Loadout( final Collection<RPGItem> items ) {
+			this.items = new ArrayList<>( items );
+			int c = 0, d = 0, a = 0;
+			for( final RPGItem i : items ) {
+				c += i.cost;
+				d += i.dmg;
+				a += i.armour;
+			}
+			this.cost = c;
+			this.damage = d;
+			this.armour = a;
+		}
+
+		/** @return The items in the loadout */
+		public List<RPGItem> getItems( ) { return items; }
+
+		/** @return The total cost of the loadout */
+		public int getCost( ) { return cost; }
+
+		/** @return The items in the loadout and their total cost */
+		@Override
+		public String toString( ) {
+			return items + ": " + cost;
+		}
+	}
+}
@@ -55,6 +55,9 @@ public class RPG {
 	/** @return The player character */
 	public RPGChar getPlayer( ) { return player; }
 	
+	/** @return The boss character */
+	public RPGChar getBoss( ) { return boss; }
+	
 	/**
 	 * Let's the specified character buy the item, if it has sufficient gold.
 	 * 
@@ -59,6 +59,9 @@ public class RPG2 {
 	/** @return The player character */
 	public RPGChar getPlayer( ) { return player; }
 	
+	/** @return The boss character */
+	public RPGChar getBoss( ) { return boss; }
+	
 	/**
 	 * Sets the AI to guide the player
 	 * 
@@ -0,0 +1,259 @@
+package aoc2015.day22.rpg2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import aoc2015.day22.rpg2.spells.RPGSDrain;
+import aoc2015.day22.rpg2.spells.RPGSMagicMissile;
+import aoc2015.day22.rpg2.spells.RPGSPoison;
+import aoc2015.day22.rpg2.spells.RPGSRecharge;
+import aoc2015.day22.rpg2.spells.RPGSShield;
+import aoc2015.day22.rpg2.spells.RPGSpellType;
+
+/**
+ * Solver that finds the cheapest sequence of spells to defeat the boss. A
+ * battle is encoded as compact state at the start of every player turn, the
+ * hit points, mana and effect timers are packed into a single long, and
+ * Dijkstra's algorithm is run over these states using the mana spent as cost.
+ *
+ * @author Joris
+ */
+public class RPG2Solver {
+	/** The number of bits used for hit points and mana in the packed state,
+	 * such that the state remains positive */
+	private static final int HP_BITS = 16, MANA_BITS = 19;
+
+	/** The number of bits used for every effect timer */
+	private static final int TIMER_BITS = 4;
+
+	/** The bit offsets of the state components */
+	private static final int BOSS_HP = HP_BITS, MANA = 2 * HP_BITS, TIMERS = 2 * HP_BITS + MANA_BITS;
+
+	/** The spells available to the player */
+	private static final RPGSpellType[] SPELLS = RPGSpellType.values( );
+
+	/** The timer indices of the spells that have a lasting effect */
+	private static final int SHIELD = RPGSpellType.Shield.ordinal( ), POISON = RPGSpellType.Poison.ordinal( ), RECHARGE = RPGSpellType.Recharge.ordinal( );
+
+	/** The position of the timer of every spell in the packed state, -1 for
+	 * spells without effect */
+	private static final int[] SLOTS = new int[ SPELLS.length ];
+	static {
+		int slot = 0;
+		for( final RPGSpellType s : SPELLS ) SLOTS[ s.ordinal( ) ] = s.isPeriodic( ) ? TIMERS + TIMER_BITS * slot++ : -1;
+		if( TIMERS + TIMER_BITS * slot > 63 ) throw new RuntimeException( "Effect timers exceed the state capacity" );
+	}
+
+	/** The initial player hit points and mana */
+	private final int playerhp, playermana;
+
+	/** The base armour of the player */
+	private final int playerarmour;
+
+	/** The initial boss hit points and its damage */
+	private final int bosshp, bossdmg;
+
+	/** The number of states expanded in the last search */
+	private long expanded;
+
+	/**
+	 * Creates a new solver for a battle between the characters
+	 *
+	 * @param player The player character, a wizard
+	 * @param boss The boss character, a fighter
+	 */
+	public RPG2Solver( final RPGChar player, final RPGChar boss ) {
+		this.playerhp = player.getHP( );
+		this.playermana = player.getMana( );
+		this.playerarmour = player.getArmour( );
+		this.bosshp = boss.getHP( );
+		this.bossdmg = boss.getDamage( );
+
+		if( playerhp >= 1 << HP_BITS || bosshp >= 1 << HP_BITS ) throw new RuntimeException( "Hit points exceed the state capacity" );
+		for( final RPGSpellType s : SPELLS )
+			if( s.getPeriodicTimer( ) >= 1 << TIMER_BITS ) throw new RuntimeException( "Effect timer of " + s + " exceeds the state capacity" );
+	}
+
+	/**
+	 * Finds the sequence of spells that defeats the boss at minimal mana cost
+	 *
+	 * @param hardmode True if the player loses one hit point at the start of
+	 *   every player turn
+	 * @return The list of spells to cast, in order, or null if the boss cannot
+	 *   be defeated
+	 */
+	public List<RPGSpellType> solve( final boolean hardmode ) {
+		final LongHashSet visited = new LongHashSet( 1024 );
+		final PriorityQueue<Node> Q = new PriorityQueue<>( );
+		Q.add( new Node( pack( playerhp, bosshp, playermana, new int[ SPELLS.length ] ), 0, null, null ) );
+		expanded = 0;
+
+		final int[] timers = new int[ SPELLS.length ];
+		while( !Q.isEmpty( ) ) {
+			final Node n = Q.poll( );
+			if( n.state == -1 ) return n.getSpells( );
+			if( !visited.add( n.state ) ) continue;
+			expanded++;
+
+			// the poison may already defeat the boss before a spell is cast
+			if( diesOfPoison( n.state, hardmode ) ) {
+				Q.add( new Node( -1, n.cost, null, n ) );
+				continue;
+			}
+
+			for( final RPGSpellType spell : SPELLS ) {
+				final long next = playRound( n.state, spell, hardmode, timers );
+				if( next == -2 ) continue;
+				if( next != -1 && visited.contains( next ) ) continue;
+				Q.add( new Node( next, n.cost + spell.getManaCost( ), spell, n ) );
+			}
+		}
+
+		return null;
+	}
+
+	/** @return The number of states expanded by the last search */
+	public long getExpanded( ) {
+		return expanded;
+	}
+
+	/**
+	 * Plays a single round of the battle, i.e. a player and a boss turn
+	 *
+	 * @param state The packed state at the start of the player turn
+	 * @param spell The spell cast by the player
+	 * @param hardmode True to enable hard mode
+	 * @param timers Buffer to unpack the timers into
+	 * @return The packed state at the start of the next player turn, -1 if the
+	 *   boss has died or -2 if the player died or could not cast the spell
+	 */
+	private long playRound( final long state, final RPGSpellType spell, final boolean hardmode, final int[] timers ) {
+		int php = (int)(state & ((1 << HP_BITS) - 1));
+		int bhp = (int)((state >>> BOSS_HP) & ((1 << HP_BITS) - 1));
+		int mana = (int)((state >>> MANA) & ((1 << MANA_BITS) - 1));
+		for( int i = 0; i < SPELLS.length; i++ ) timers[i] = SLOTS[i] < 0 ? 0 : (int)((state >>> SLOTS[i]) & ((1 << TIMER_BITS) - 1));
+
+		// player turn
+		if( hardmode && --php <= 0 ) return -2;
+		if( timers[ POISON ] > 0 ) bhp -= RPGSPoison.DAMAGE;
+		if( timers[ RECHARGE ] > 0 ) mana += RPGSRecharge.MANA;
+		tick( timers );
+		if( bhp <= 0 ) return -1;
+
+		// a spell may not be cast if it is unaffordable or its effect is still active
+		if( spell.getManaCost( ) > mana || timers[ spell.ordinal( ) ] > 0 ) return -2;
+		mana -= spell.getManaCost( );
+		switch( spell ) {
+			case MagicMissile: bhp -= RPGSMagicMissile.DAMAGE; break;
+			case Drain: bhp -= RPGSDrain.DRAIN; php += RPGSDrain.DRAIN; break;
+			default: timers[ spell.ordinal( ) ] = spell.getPeriodicTimer( );
+		}
+		if( bhp <= 0 ) return -1;
+
+		// boss turn
+		if( timers[ POISON ] > 0 ) bhp -= RPGSPoison.DAMAGE;
+		if( timers[ RECHARGE ] > 0 ) mana += RPGSRecharge.MANA;
+		tick( timers );
+		if( bhp <= 0 ) return -1;
+		final int armour = playerarmour + (timers[ SHIELD ] > 0 ? RPGSShield.ARMOUR_BONUS : 0);
+		php -= Math.max( bossdmg - armour, 1 );
+		if( php <= 0 ) return -2;
+
+		if( php >= 1 << HP_BITS || mana >= 1 << MANA_BITS ) throw new RuntimeException( "Battle state exceeds the state capacity" );
+		return pack( php, bhp, mana, timers );
+	}
+
+	/**
+	 * Checks whether the boss dies of poison at the start of the player turn
+	 *
+	 * @param state The packed state at the start of the player turn
+	 * @param hardmode True to enable hard mode
+	 * @return True iff the boss dies before the player can cast a spell
+	 */
+	private static boolean diesOfPoison( final long state, final boolean hardmode ) {
+		final int php = (int)(state & ((1 << HP_BITS) - 1));
+		final int bhp = (int)((state >>> BOSS_HP) & ((1 << HP_BITS) - 1));
+		final int poison = (int)((state >>> SLOTS[ POISON ]) & ((1 << TIMER_BITS) - 1));
+		return (!hardmode || php > 1) && poison > 0 && bhp <= RPGSPoison.DAMAGE;
+	}
+
+	/**
+	 * Decreases the timers of all active effects
+	 *
+	 * @param timers The effect timers
+	 */
+	private static void tick( final int[] timers ) {
+		for( int i = 0; i < timers.length; i++ )
+			if( timers[i] > 0 ) timers[i]--;
+	}
+
+	/**
+	 * Packs the battle state into a single long
+	 *
+	 * @param php The player hit points
+	 * @param bhp The boss hit points
+	 * @param mana The player mana
+	 * @param timers The effect timers
+	 * @return The packed state
+	 */
+	private static long pack( final int php, final int bhp, final int mana, final int[] timers ) {
+		long state = php | ((long)bhp << BOSS_HP) | ((long)mana << MANA);
+		for( int i = 0; i < timers.length; i++ )
+			if( SLOTS[i] >= 0 ) state |= (long)timers[i] << SLOTS[i];
+		return state;
+	}
+
+	/**
+	 * A node in the search, the state is -1 for a won battle
+	 */
+	private static class Node implements Comparable<Node> {
+		/** The packed state */
+		private final long state;
+
+		/** The mana spent to reach the state */
+		private final int cost;
+
+		/** The spell cast to reach this state */
+		private final RPGSpellType spell;
+
+		/** The previous node */
+		private final Node parent;
+
+		/**
+		 * Creates a new search node
+		 *
+		 * @param state The packed state
+		 * @param cost The mana spent
+		 * @param spell The spell cast last
+		 * @param parent The previous node
+		 */
+		private Node( final long state, final int cost, final RPGSpellType spell, final Node parent ) {
+			this.state = state;
+			this.cost = cost;
+			this.spell = spell;
+			this.parent = parent;
+		}
+
+		/** @return The spells cast to reach this node, in order */
+		private List<RPGSpellType> getSpells( ) {
+			final List<RPGSpellType> spells = new ArrayList<>( );
+			for( Node n = this; n.parent != null; n = n.parent )
+				if( n.spell != null ) spells.add( n.spell );
+			Collections.reverse( spells );
+			return spells;
+		}
+
+		/**
+		 * Orders nodes by increasing mana cost
+		 *
+		 * @param n The other node
+		 * @return The comparison result
+		 */
+		@Override
+		public int compareTo( final Node n ) {
+			return Integer.compare( cost, n.cost );
+		}
+	}
+}
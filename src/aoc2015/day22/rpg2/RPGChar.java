@@ -89,6 +89,9 @@ public class RPGChar extends LabeledObject {
 	/** @return The current hit points */
 	public int getHP( ) { return hp; }
 	
+	/** @return The current mana */
+	public int getMana( ) { return mana; }
+	
 	/** @return The current weapon damage, incorporating all spells */
 	public int getDamage( ) { 
 		return dmg;
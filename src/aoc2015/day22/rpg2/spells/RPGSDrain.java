@@ -9,6 +9,8 @@ import aoc2015.day22.rpg2.RPGCharacterDied;
  * @author Joris
  */
 public class RPGSDrain extends RPGSpell {
+	/** The hit points drained from the target */
+	public static final int DRAIN = 2;
 	
 	/**
 	 * Creates a new drain spell
@@ -26,8 +28,8 @@ public class RPGSDrain extends RPGSpell {
 	 */
 	@Override
 	public boolean castDirect( final RPGChar target ) throws RPGCharacterDied {
-		target.takeHit( 2, true );
-		caster.heal( 2 );
+		target.takeHit( DRAIN, true );
+		caster.heal( DRAIN );
 		return true;
 	}
 
@@ -9,6 +9,8 @@ import aoc2015.day22.rpg2.RPGCharacterDied;
  * @author Joris
  */
 public class RPGSMagicMissile extends RPGSpell {
+	/** The damage dealt by the missile */
+	public static final int DAMAGE = 4;
 	
 	/**
 	 * Creates a new magic missile spell
@@ -27,7 +29,7 @@ public class RPGSMagicMissile extends RPGSpell {
 	@Override
 	public boolean castDirect( final RPGChar target ) throws RPGCharacterDied {
 		// immediately deals damage to the target
-		target.takeHit( 4, true );
+		target.takeHit( DAMAGE, true );
 		return true;
 	}
 }
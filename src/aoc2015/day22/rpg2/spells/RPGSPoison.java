@@ -9,6 +9,8 @@ import aoc2015.day22.rpg2.RPGCharacterDied;
  * @author Joris
  */
 public class RPGSPoison extends RPGSpell {
+	/** The damage dealt every tick */
+	public static final int DAMAGE = 3;
 	
 	/**
 	 * Creates a new poison spell
@@ -26,6 +28,6 @@ public class RPGSPoison extends RPGSpell {
 	 */	
 	@Override
 	protected void applyTick( final RPGChar target ) throws RPGCharacterDied {
-		target.takeHit( 3, true );
+		target.takeHit( DAMAGE, true );
 	}
 }
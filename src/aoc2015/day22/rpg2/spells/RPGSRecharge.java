@@ -9,6 +9,8 @@ import aoc2015.day22.rpg2.RPGCharacterDied;
  * @author Joris
  */
 public class RPGSRecharge extends RPGSpell {
+	/** The mana restored every tick */
+	public static final int MANA = 101;
 	
 	/**
 	 * Creates a new recharge spell
@@ -26,6 +28,6 @@ public class RPGSRecharge extends RPGSpell {
 	 */
 	@Override
 	protected void applyTick( final RPGChar target ) throws RPGCharacterDied {
-		target.addMana( 101 );
+		target.addMana( MANA );
 	}
 }
@@ -10,7 +10,7 @@ import aoc2015.day22.rpg2.RPGCharacterDied;
  */
 public class RPGSShield extends RPGSpell {
 	/** The armour bonus to apply */
-	private final int armourbonus = 7;
+	public static final int ARMOUR_BONUS = 7;
 	
 	/**
 	 * Creates a new shield spell
@@ -29,7 +29,7 @@ public class RPGSShield extends RPGSpell {
 	@Override
 	public boolean castDirect( final RPGChar target ) throws RPGCharacterDied {
 		// immediately deals damage to the target but also heal the player
-		target.addArmourBonus( armourbonus );
+		target.addArmourBonus( ARMOUR_BONUS );
 		return true;
 	}
 	
@@ -40,6 +40,6 @@ public class RPGSShield extends RPGSpell {
 	 */
 	@Override
 	protected void endTick( RPGChar target ) {
-		target.addArmourBonus( -armourbonus );
+		target.addArmourBonus( -ARMOUR_BONUS );
 	}
 }
@@ -1,141 +1,252 @@
 package aoc2015.day24;
 
+import java.math.BigInteger;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.stream.IntStream;
 
 /**
  * A little balancer for Santa's sleigh that helps him produce the packing list
- * that allows him the most leg room while minimising the risk of 
+ * that allows him the most leg room while minimising the risk of
  * "complications".
- * 
+ *
+ * Package groups are represented as bitmasks over the packages, sorted by
+ * decreasing weight. Candidate groups for the passenger compartment are
+ * searched in order of increasing size and pruned on weight and on the best
+ * quantum entanglement found so far. A candidate is only accepted if the
+ * remaining packages can be split into the other groups. The branches of the
+ * search are divided over all cores.
+ *
  * @author Joris
  */
 public class SleighBalancer {
-	/** The weights of the packages to pack */
-	private Set<Integer> packages;
+	/** The tolerance used when comparing logarithms of entanglements */
+	private static final double EPSILON = 1e-9;
+
+	/** The weights of the packages to pack, in decreasing order */
+	private final int[] packages;
+
+	/** The natural logarithms of the package weights */
+	private final double[] logs;
+
+	/** The prefix sums of the package weights */
+	private final int[] prefix;
+
+	/** The number of groups to divide the packages into */
+	private final int groups;
 
 	/** The group weight that are looking for */
 	private final int groupweight;
-	
+
+	/** The best group found by the last optimisation, as bitmask */
+	private long bestgroup;
+
 	/**
 	 * Creates a new balancing aid for the given set of package weights
-	 * 
+	 *
 	 * @param packageweights The weights of the packages to consider
 	 * @param groups The number of groups to divider the packages into
 	 */
 	public SleighBalancer( final List<String> packageweights, final int groups ) {
-		this.packages = new HashSet<>( packageweights.size( ) );
-		packageweights.forEach( w -> packages.add( Integer.parseInt( w ) ) );
+		if( packageweights.size( ) > 63 ) throw new RuntimeException( "At most 63 packages are supported" );
+		this.packages = packageweights.stream( ).mapToInt( Integer::parseInt ).map( x -> -x ).sorted( ).map( x -> -x ).toArray( );
+		for( final int w : packages )
+			if( w <= 0 ) throw new RuntimeException( "Invalid package weight: " + w );
+		this.groups = groups;
 
-		this.groupweight = packages.stream( ).mapToInt( x -> x ).sum( ) / groups;
+		this.logs = IntStream.of( packages ).mapToDouble( Math::log ).toArray( );
+		this.prefix = new int[ packages.length + 1 ];
+		for( int i = 0; i < packages.length; i++ ) prefix[ i + 1 ] = prefix[i] + packages[i];
+
+		final int total = IntStream.of( packages ).sum( );
+		if( total % groups != 0 ) throw new RuntimeException( "The packages cannot be divided into " + groups + " groups of equal weight" );
+		this.groupweight = total / groups;
 	}
-	
+
 	/**
 	 * Optimises the packing of packages into groups such that the size is
 	 * minimal, leaving Santa room to sit, and the quantum entanglement is also
 	 * minimal, minimising the risk of "complications"
-	 *  
+	 *
 	 * @return The minimal quantum entanglement value of the smallest set size
+	 * @throws ArithmeticException if the entanglement exceeds the range of a
+	 *   long, use optimiseQuantumEntanglementExact instead
 	 */
 	public long optimiseQuantumEntanglement( ) {
+		return optimiseQuantumEntanglementExact( ).longValueExact( );
+	}
+
+	/**
+	 * Optimises the packing of packages as optimiseQuantumEntanglement, but
+	 * returns the exact entanglement that may exceed the range of a long
+	 *
+	 * @return The minimal quantum entanglement value of the smallest set size
+	 */
+	public BigInteger optimiseQuantumEntanglementExact( ) {
+		final int N = packages.length;
+		for( int size = 1; size <= N; size++ ) {
+			final int groupsize = size;
+			final Best best = new Best( );
+
+			// split the search on the first package in the group
+			IntStream.range( 0, N ).parallel( ).forEach( first -> {
+				if( packages[ first ] > groupweight ) return;
+				new GroupSearch( groupsize, best ).search( 1l << first, packages[ first ], logs[ first ], first + 1, 1 );
+			} );
+
+			if( best.qe != null ) {
+				bestgroup = best.group;
+				return best.qe;
+			}
+		}
+
+		throw new RuntimeException( "The packages cannot be balanced over " + groups + " groups" );
+	}
+
+	/** @return The weights of the packages in the best group of the last optimisation */
+	public List<Integer> getBestGroup( ) {
+		final List<Integer> group = new ArrayList<>( );
+		for( int i = 0; i < packages.length; i++ )
+			if( (bestgroup & (1l << i)) != 0 ) group.add( packages[i] );
+		return group;
+	}
+
+	/**
+	 * Checks whether the packages in the mask can be divided into the given
+	 * number of groups of equal weight. The heaviest remaining package is always
+	 * put into the first group to break symmetry.
+	 *
+	 * @param mask The packages to divide
+	 * @param k The number of groups
+	 * @param memo The memoised results per mask
+	 * @return True iff the packages can be divided
+	 */
+	private boolean canPartition( final long mask, final int k, final Map<Long, Boolean> memo ) {
+		if( k <= 1 ) return true;
+		final Boolean known = memo.get( mask );
+		if( known != null ) return known;
 
-		// generate all subsets of packages with the max weight per group
-		final List<PackageGroup> groups = new ArrayList<>( );
-		generateSubSets( groups, new ArrayList<>( packages ), new PackageGroup( ), 0 );
-		
-		// keep only smallest groups
-		final int smallest = groups.stream( ).mapToInt( x -> x.size( ) ).min( ).getAsInt( );
-		groups.removeIf( x -> x.size( ) > smallest );
-		
-		// return the smallest quantum entanglement of the remaining groups
-		return groups.stream( ).mapToLong( x -> x.getQuantumEntanglement( ) ).min( ).getAsLong( );
+		final int first = Long.numberOfTrailingZeros( mask );
+		final boolean result = fillGroup( mask & ~(1l << first), packages[ first ], first + 1, k, memo );
+		memo.put( mask, result );
+		return result;
 	}
-	
+
 	/**
-	 * Generates all package groups that can be constructed from the set of
-	 * input weights such that exactly equal the total weight divided by the
-	 * number of packing groups. In other words, the sub sets that equally
-	 * distribute package weights
-	 * 
-	 * @param subsets The current list of generated package groups
-	 * @param weights The set of package weights 
-	 * @param current The package group we are currently building
-	 * @param curridx The index of the next weight to consider
+	 * Tries to complete a group of the given weight from the remaining packages
+	 * such that the rest can still be partitioned
+	 *
+	 * @param remaining The packages that are not in the current group
+	 * @param weight The weight of the current group
+	 * @param idx The next package to consider
+	 * @param k The number of groups, including the current one
+	 * @param memo The memoised partition results
+	 * @return True if a group was completed with a partitionable remainder
 	 */
-	private void generateSubSets( final List<PackageGroup> subsets, final List<Integer> weights, final PackageGroup current, final int curridx ) {
-		if( current.getWeight( ) > groupweight ) return;
-		if( curridx == weights.size( ) ) {
-			if( current.getWeight( ) != groupweight ) return;
-			subsets.add( current.copy( ) );
-			return;
+	private boolean fillGroup( final long remaining, final int weight, final int idx, final int k, final Map<Long, Boolean> memo ) {
+		if( weight == groupweight ) return canPartition( remaining, k - 1, memo );
+
+		for( int i = idx; i < packages.length; i++ ) {
+			if( (remaining & (1l << i)) == 0 || weight + packages[i] > groupweight ) continue;
+			if( fillGroup( remaining & ~(1l << i), weight + packages[i], i + 1, k, memo ) ) return true;
 		}
-		
-		final int w = weights.get( curridx );
-		current.add( w );
-		generateSubSets( subsets, weights, current, curridx + 1 );
-		current.pop( );
-		generateSubSets( subsets, weights, current, curridx + 1 );
+		return false;
 	}
-	
+
 	/**
-	 * Group of packages
+	 * The best group found for the current group size, shared by all threads
 	 */
-	private class PackageGroup {
-		/** The packages in the group */
-		private List<Integer> packs;
-		
-		/** The total weight of the packages */
-		protected int weight;
-		
+	private static class Best {
+		/** The logarithm of the best entanglement, used for pruning */
+		private volatile double log = Double.POSITIVE_INFINITY;
+
+		/** The best entanglement, null if none has been found */
+		private BigInteger qe;
+
+		/** The best group as bitmask */
+		private long group;
+
 		/**
-		 * Creates a new, empty package group
+		 * Offers a new group, keeps it if it improves the best entanglement
+		 *
+		 * @param group The group
+		 * @param qe The exact entanglement of the group
+		 * @param log The logarithm of the entanglement
 		 */
-		public PackageGroup( ) {
-			this.packs = new ArrayList<>( );
-			this.weight = 0;
-		}
-		
-		/** @return The total weight of the packages in the group */
-		public int getWeight( ) { return weight; }
-		
-		/** @return The quantum entanglement of the packages */
-		public long getQuantumEntanglement( ) {
-			return packs.stream( ).mapToLong( x -> x ).reduce( Math::multiplyExact ).getAsLong( );
+		private synchronized void offer( final long group, final BigInteger qe, final double log ) {
+			final int cmp = this.qe == null ? -1 : qe.compareTo( this.qe );
+			if( cmp < 0 || (cmp == 0 && group < this.group) ) {
+				this.qe = qe;
+				this.group = group;
+				this.log = Math.min( this.log, log );
+			}
 		}
-		
+	}
+
+	/**
+	 * Search for passenger groups of a fixed size, run by a single thread
+	 */
+	private class GroupSearch {
+		/** The required number of packages in the group */
+		private final int size;
+
+		/** The best group found by any thread */
+		private final Best best;
+
+		/** The memoised partition results */
+		private final Map<Long, Boolean> memo;
+
 		/**
-		 * Adds a weight to the group
-		 * 
-		 * @param w The weight to add
+		 * Creates a new search
+		 *
+		 * @param size The group size
+		 * @param best The shared best group
 		 */
-		public void add( final int w ) {
-			packs.add( w );
-			weight += w;
+		private GroupSearch( final int size, final Best best ) {
+			this.size = size;
+			this.best = best;
+			this.memo = new HashMap<>( );
 		}
-		
+
 		/**
-		 * Pops the last weight from the group
-		 * 
-		 * @return The weight popped
+		 * Extends the current group with packages from idx onwards. The
+		 * entanglement is tracked as sum of logarithms so that it never
+		 * overflows, the exact product is only computed for complete groups.
+		 *
+		 * @param group The current group as bitmask
+		 * @param weight The weight of the group
+		 * @param logqe The logarithm of the quantum entanglement of the group
+		 * @param idx The next package to consider
+		 * @param count The number of packages in the group
 		 */
-		public int pop( ) {
-			final int w = packs.remove( packs.size( ) - 1 );
-			weight -= w;
-			return w;
-		}
-		
-		/** @return The size of the group */
-		public int size( ) {
-			return packs.size( );
-		}
-		
-		/** @return A copy of this package group */
-		public PackageGroup copy( ) {
-			final PackageGroup pg = new PackageGroup( );
-			for( final Integer w : packs ) pg.add( w );
-			return pg;
+		private void search( final long group, final int weight, final double logqe, final int idx, final int count ) {
+			// every package weighs at least one, so the entanglement cannot decrease
+			if( logqe > best.log + EPSILON ) return;
+
+			if( count == size ) {
+				if( weight != groupweight ) return;
+				if( !canPartition( ((1l << packages.length) - 1) & ~group, groups - 1, memo ) ) return;
+
+				BigInteger qe = BigInteger.ONE;
+				for( int i = 0; i < packages.length; i++ )
+					if( (group & (1l << i)) != 0 ) qe = qe.multiply( BigInteger.valueOf( packages[i] ) );
+				best.offer( group, qe, logqe );
+				return;
+			}
+
+			// the remaining packages must still be able to reach the group weight
+			final int left = size - count;
+			if( packages.length - idx < left ) return;
+			final int maxweight = prefix[ idx + left ] - prefix[ idx ];
+			final int minweight = prefix[ packages.length ] - prefix[ packages.length - left ];
+			if( weight + maxweight < groupweight || weight + minweight > groupweight ) return;
+
+			for( int i = idx; i < packages.length; i++ ) {
+				if( weight + packages[i] > groupweight ) continue;
+				search( group | (1l << i), weight + packages[i], logqe + logs[i], i + 1, count + 1 );
+			}
 		}
 	}
 }
@@ -0,0 +1,122 @@
+package aoc2015.day25;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * The code grid of Santa's weather machine. Codes are filled in diagonally,
+ * starting at the bottom-left of every diagonal, and every code is generated
+ * from its predecessor by multiplying it with a fixed multiplier modulo some
+ * modulus. Hence, the code at index i is simply
+ * first * multiplier^(i - 1) mod modulus, which is found using fast modular
+ * exponentiation instead of generating all codes before it.
+ *
+ * @author Joris
+ */
+public class CodeGrid {
+	/** The first code in the grid */
+	private final long first;
+
+	/** The multiplier used to generate the next code */
+	private final long multiplier;
+
+	/** The modulus of the code generation */
+	private final long modulus;
+
+	/**
+	 * Creates the code grid as used by the weather machine manual
+	 */
+	public CodeGrid( ) {
+		this( 20151125, 252533, 33554393 );
+	}
+
+	/**
+	 * Creates a new code grid
+	 *
+	 * @param first The first code in the grid
+	 * @param multiplier The multiplier to generate the next code
+	 * @param modulus The modulus of the generator, products of two residues
+	 *   must fit in a long
+	 */
+	public CodeGrid( final long first, final long multiplier, final long modulus ) {
+		if( modulus <= 0 || modulus > 3037000499l ) throw new RuntimeException( "Invalid modulus: " + modulus );
+		this.first = Math.floorMod( first, modulus );
+		this.multiplier = Math.floorMod( multiplier, modulus );
+		this.modulus = modulus;
+	}
+
+	/**
+	 * Determines the index of the code at the given position, i.e. the number
+	 * of codes generated up to and including the position
+	 *
+	 * @param row The row number, starting at 1
+	 * @param column The column number, starting at 1
+	 * @return The index of the code, starting at 1
+	 */
+	public static long getIndex( final int row, final int column ) {
+		if( row < 1 || column < 1 ) throw new RuntimeException( "Invalid grid position: (" + row + ", " + column + ")" );
+
+		// all codes on the diagonals before the one of the position, followed by
+		// the codes on its own diagonal up to the column
+		final long n = (long)row + column - 2;
+		final long diagonals = n % 2 == 0 ? (n / 2) * (n + 1) : n * ((n + 1) / 2);
+		return diagonals + column;
+	}
+
+	/**
+	 * Computes the code at the given grid position
+	 *
+	 * @param row The row number, starting at 1
+	 * @param column The column number, starting at 1
+	 * @return The code
+	 */
+	public long getCode( final int row, final int column ) {
+		return first * modPow( multiplier, getIndex( row, column ) - 1 ) % modulus;
+	}
+
+	/**
+	 * Computes the codes for a batch of grid positions. The positions are
+	 * processed in order of their index, such that every code follows from the
+	 * previous one using the power of the index difference.
+	 *
+	 * @param rows The row numbers of the positions
+	 * @param columns The column numbers of the positions
+	 * @return The codes for the positions, in the order of the input
+	 */
+	public long[] getCodes( final int[] rows, final int[] columns ) {
+		if( rows.length != columns.length ) throw new RuntimeException( "Rows and columns differ in length" );
+
+		final long[] idx = new long[ rows.length ];
+		for( int i = 0; i < rows.length; i++ ) idx[i] = getIndex( rows[i], columns[i] );
+		final Integer[] order = IntStream.range( 0, idx.length ).boxed( ).toArray( Integer[]::new );
+		Arrays.sort( order, Comparator.comparingLong( i -> idx[i] ) );
+
+		final long[] codes = new long[ rows.length ];
+		long code = first;
+		long index = 1;
+		for( final int i : order ) {
+			code = code * modPow( multiplier, idx[i] - index ) % modulus;
+			index = idx[i];
+			codes[i] = code;
+		}
+		return codes;
+	}
+
+	/**
+	 * Computes base^exp mod modulus by repeated squaring
+	 *
+	 * @param base The base, reduced modulo the modulus
+	 * @param exp The non-negative exponent
+	 * @return The modular power
+	 */
+	private long modPow( final long base, final long exp ) {
+		long result = 1 % modulus;
+		long b = base;
+		for( long e = exp; e > 0; e >>= 1 ) {
+			if( (e & 1) != 0 ) result = result * b % modulus;
+			b = b * b % modulus;
+		}
+		return result;
+	}
+}
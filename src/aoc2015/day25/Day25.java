@@ -24,22 +24,7 @@ public class Day25 {
 	 * @return The code to start Santa's weather machine
 	 */
 	private static long part1( final int row, final int column ) {
-		// determine all numbers before me in the pyramid below the diagonal on
-		// which the row,col combination reside using the sum of natural numbers
-		final long n = row + column - 2;
-		final long euler = n * (n + 1) / 2;
-		
-		// combine that with the elements before the row,col on the diagonal itself
-		// to find the number of generated codes
-		long codeindex = euler + column;
-		
-		// okay, now we know the number of iterations. Find the code
-		long code = 20151125;
-		while( --codeindex > 0 ) {
-			code = code * 252533 % 33554393;
-		}
-		
-		return code;
+		return new CodeGrid( ).getCode( row, column );
 	}
 
 }
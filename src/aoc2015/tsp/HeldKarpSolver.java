@@ -0,0 +1,181 @@
+package aoc2015.tsp;
+
+import java.util.Arrays;
+
+/**
+ * Solves travelling salesman style routing problems over a cost matrix using
+ * the Held-Karp bitmask dynamic program. This runs in O(2^n * n^2) time with
+ * a single primitive DP table of 2^(n-1) * (n-1) entries, instead of the n!
+ * routes that need to be considered when enumerating permutations.
+ * 
+ * Both closed tours, i.e. cycles that return to the first node, and open
+ * paths that may start and end anywhere are supported. Either the minimal or
+ * maximal cost route can be found.
+ * 
+ * @author Joris
+ */
+public class HeldKarpSolver {
+	/** The maximum number of nodes in a cycle, limits the DP table to 2^26 entries */
+	public static final int MAX_NODES = 22;
+	
+	/** The cost matrix, C[i][j] is the cost of travelling from i to j */
+	private final int[][] C;
+	
+	/** True to maximise the route cost, false to minimise it */
+	private final boolean maximise;
+	
+	/**
+	 * Creates a new solver
+	 * 
+	 * @param costs The cost matrix, costs[i][j] is the cost of going from node
+	 *   i to node j
+	 * @param maximise True to find the route with maximal cost, false to find
+	 *   the minimal cost route
+	 */
+	public HeldKarpSolver( final int[][] costs, final boolean maximise ) {
+		for( final int[] row : costs )
+			if( row.length != costs.length ) throw new IllegalArgumentException( "Cost matrix must be square" );
+		
+		this.C = costs;
+		this.maximise = maximise;
+	}
+	
+	/**
+	 * Finds the optimal closed tour that visits every node exactly once and
+	 * returns to its starting node
+	 * 
+	 * @return The optimal tour, starting at node 0
+	 */
+	public Route solveCycle( ) {
+		return solve( C );
+	}
+	
+	/**
+	 * Finds the optimal open path that visits every node exactly once
+	 * 
+	 * @return The optimal path
+	 */
+	public Route solvePath( ) {
+		// add a virtual node with zero cost to all others, the optimal cycle
+		// through that node then corresponds to the optimal open path
+		final int N = C.length;
+		final int[][] C2 = new int[ N + 1 ][ N + 1 ];
+		for( int i = 0; i < N; i++ )
+			System.arraycopy( C[i], 0, C2[i + 1], 1, N );
+		
+		final Route cycle = solve( C2 );
+		final int[] order = new int[ N ];
+		for( int i = 0; i < N; i++ ) order[i] = cycle.order[i + 1] - 1;
+		return new Route( cycle.score, order );
+	}
+	
+	/**
+	 * Runs the Held-Karp DP to find the optimal cycle starting and ending in
+	 * node 0
+	 * 
+	 * @param D The cost matrix
+	 * @return The optimal cycle
+	 */
+	private Route solve( final int[][] D ) {
+		final int N = D.length;
+		if( N > MAX_NODES ) throw new IllegalArgumentException( "Too many nodes for Held-Karp solver: " + N + " (max " + MAX_NODES + ")" );
+		if( N == 0 ) return new Route( 0, new int[ 0 ] );
+		if( N == 1 ) return new Route( D[0][0], new int[] { 0 } );
+		
+		// DP over subsets of nodes 1..N-1, node 0 is the fixed start
+		final int M = N - 1;
+		final int full = (1 << M) - 1;
+		final int none = maximise ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+		final int[] dp = new int[ (full + 1) * M ];
+		Arrays.fill( dp, none );
+		for( int j = 0; j < M; j++ ) dp[ (1 << j) * M + j ] = D[0][j + 1];
+		
+		for( int mask = 1; mask <= full; mask++ ) {
+			for( int j = 0; j < M; j++ ) {
+				final int v = dp[ mask * M + j ];
+				if( v == none ) continue;
+				
+				// extend the path ending in j with every unvisited node
+				final int[] Dj = D[ j + 1 ];
+				for( int k = 0; k < M; k++ ) {
+					if( (mask & (1 << k)) != 0 ) continue;
+					final int idx = (mask | (1 << k)) * M + k;
+					final int nv = v + Dj[ k + 1 ];
+					if( dp[ idx ] == none || better( nv, dp[ idx ] ) ) dp[ idx ] = nv;
+				}
+			}
+		}
+		
+		// close the cycle
+		int best = none, last = -1;
+		for( int j = 0; j < M; j++ ) {
+			final int v = dp[ full * M + j ] + D[j + 1][0];
+			if( last == -1 || better( v, best ) ) { best = v; last = j; }
+		}
+		
+		// reconstruct the order by walking back through the table
+		final int[] order = new int[ N ];
+		int mask = full;
+		int cur = last;
+		for( int pos = N - 1; pos >= 1; pos-- ) {
+			order[ pos ] = cur + 1;
+			final int prevmask = mask & ~(1 << cur);
+			if( prevmask == 0 ) break;
+			
+			final int target = dp[ mask * M + cur ];
+			for( int p = 0; p < M; p++ ) {
+				if( (prevmask & (1 << p)) == 0 ) continue;
+				final int v = dp[ prevmask * M + p ];
+				if( v != none && v + D[p + 1][cur + 1] == target ) { cur = p; break; }
+			}
+			mask = prevmask;
+		}
+		order[0] = 0;
+		
+		return new Route( best, order );
+	}
+	
+	/**
+	 * Checks if the value is better than the reference value
+	 * 
+	 * @param value The value to test
+	 * @param ref The reference value
+	 * @return True iff the value improves on the reference
+	 */
+	private boolean better( final int value, final int ref ) {
+		return maximise ? value > ref : value < ref;
+	}
+	
+	/**
+	 * The result of the solver: the optimal order and its cost
+	 */
+	public static class Route {
+		/** The total cost of the route */
+		public final int score;
+		
+		/** The order in which the nodes are visited */
+		private final int[] order;
+		
+		/**
+		 * Creates a new route
+		 * 
+		 * @param score The total route cost
+		 * @param order The order of nodes
+		 */
+		private Route( final int score, final int[] order ) {
+			this.score = score;
+			this.order = order;
+		}
+		
+		/** @return The node order of the route */
+		public int[] getOrder( ) {
+			return order.clone( );
+		}
+		
+		/** @return The route order and its score */
+		@Override
+		public String toString( ) {
+			return Arrays.toString( order ) + ": " + score;
+		}
+	}
+}
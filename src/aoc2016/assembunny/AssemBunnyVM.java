@@ -0,0 +1,359 @@
+package aoc2016.assembunny;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Virtual machine that runs assembunny programs. The program is decoded once
+ * into opcodes and operands, where every operand is flagged as register or
+ * literal. The tgl instruction patches the decoded opcode in place.
+ *
+ * Before an instruction is executed the machine checks whether it starts one
+ * of the common inc/dec/jnz loop idioms, which it then performs in a single
+ * step as addition or multiplication. The idioms are detected on the current,
+ * possibly toggled, program so the result is exactly that of running the loop
+ * with wrapping long arithmetic.
+ *
+ * @author Joris
+ */
+public class AssemBunnyVM {
+	/** The opcodes */
+	private static final int CPY = 0, INC = 1, DEC = 2, JNZ = 3, TGL = 4, OUT = 5, ADD = 6, MUL = 7, NOP = 8;
+
+	/** The instruction names, indexed by opcode */
+	private static final String[] NAMES = { "cpy", "inc", "dec", "jnz", "tgl", "out", "add", "mul", "nop" };
+
+	/** The number of operands per opcode */
+	private static final int[] ARITY = { 2, 1, 1, 2, 1, 1, 2, 2, 0 };
+
+	/** The loop idioms that can be folded */
+	private static final int FOLD_NONE = 0, FOLD_ADD = 1, FOLD_MUL = 2;
+
+	/** The number of registers */
+	private static final int REGISTERS = 4;
+
+	/** The current opcode of every instruction */
+	private final int[] op;
+
+	/** The number of operands of every instruction, fixed at decoding */
+	private final int[] arity;
+
+	/** The operand values, either a register index or a literal */
+	private final long[] arg0, arg1;
+
+	/** True if the corresponding operand refers to a register */
+	private final boolean[] reg0, reg1;
+
+	/** The loop idiom that starts at every instruction */
+	private final int[] fold;
+
+	/** The registers */
+	private final long[] R;
+
+	/** The current instruction pointer */
+	private int IP;
+
+	/** True to fold loop idioms */
+	private boolean folding;
+
+	/** The number of steps executed by the last run, a folded loop counts as
+	 * a single step */
+	private long steps;
+
+	/** The output consumer */
+	private OutputConsumer out;
+
+	/**
+	 * Decodes a program into a new virtual machine
+	 *
+	 * @param program The program as a list of instruction strings
+	 */
+	public AssemBunnyVM( final List<String> program ) {
+		final int N = program.size( );
+		op = new int[ N ];
+		arity = new int[ N ];
+		arg0 = new long[ N ];
+		arg1 = new long[ N ];
+		reg0 = new boolean[ N ];
+		reg1 = new boolean[ N ];
+		fold = new int[ N ];
+		R = new long[ REGISTERS ];
+
+		for( int i = 0; i < N; i++ ) {
+			final String[] s = program.get( i ).trim( ).split( " +" );
+			op[i] = -1;
+			for( int o = 0; o < NAMES.length; o++ )
+				if( NAMES[o].equals( s[0].toLowerCase( ) ) ) op[i] = o;
+			if( op[i] < 0 ) throw new RuntimeException( "Unsupported instruction: " + program.get( i ) );
+
+			arity[i] = s.length - 1;
+			if( arity[i] != ARITY[ op[i] ] ) throw new RuntimeException( "Invalid number of operands: " + program.get( i ) );
+			if( arity[i] > 0 ) { reg0[i] = isRegister( s[1] ); arg0[i] = decode( s[1] ); }
+			if( arity[i] > 1 ) { reg1[i] = isRegister( s[2] ); arg1[i] = decode( s[2] ); }
+		}
+
+		folding = true;
+		setOutputConsumer( v -> System.out.print( v ) );
+		updateFolds( );
+	}
+
+	/**
+	 * Enables or disables the folding of loop idioms
+	 *
+	 * @param enabled True to fold loops
+	 */
+	public void setFolding( final boolean enabled ) {
+		this.folding = enabled;
+	}
+
+	/**
+	 * Sets the output consumer of the program
+	 *
+	 * @param consumer The object that consumes output from the program
+	 */
+	public void setOutputConsumer( final OutputConsumer consumer ) {
+		this.out = consumer;
+	}
+
+	/**
+	 * Runs the program from the start. Instructions that have become invalid
+	 * through toggling, such as a copy to a literal, are skipped. The program
+	 * is not modified by the run, toggles only last until it ends.
+	 *
+	 * @param r The initial values for its registers
+	 * @throws InterruptException if the output consumer interrupts the program
+	 */
+	public void run( final long... r ) throws InterruptException {
+		if( r.length > REGISTERS ) throw new IllegalArgumentException( "Invalid number of registers (max " + REGISTERS + "): " + r.length );
+		for( int i = 0; i < REGISTERS; i++ ) R[i] = i < r.length ? r[i] : 0;
+		IP = 0;
+		steps = 0;
+
+		final int[] original = op.clone( );
+		try {
+			while( IP >= 0 && IP < op.length ) {
+				steps++;
+				if( folding && fold[ IP ] != FOLD_NONE ) executeFold( );
+				else execute( );
+			}
+		} finally {
+			if( !Arrays.equals( original, op ) ) {
+				System.arraycopy( original, 0, op, 0, op.length );
+				updateFolds( );
+			}
+		}
+	}
+
+	/**
+	 * Runs a program that produces no output
+	 *
+	 * @param r The initial values for its registers
+	 */
+	public void runProgram( final long... r ) {
+		try {
+			run( r );
+		} catch( InterruptException ie ) {
+			throw new RuntimeException( "Program was interrupted", ie );
+		}
+	}
+
+	/**
+	 * Reads the value of a register
+	 *
+	 * @param r The register name
+	 * @return The value of the register
+	 */
+	public long getRegister( final char r ) {
+		if( r < 'a' || r >= 'a' + REGISTERS ) throw new IllegalArgumentException( "Invalid register: " + r );
+		return R[ r - 'a' ];
+	}
+
+	/** @return The number of steps executed by the last run */
+	public long getSteps( ) {
+		return steps;
+	}
+
+	/**
+	 * Executes the instruction at the instruction pointer
+	 *
+	 * @throws InterruptException if the output consumer interrupts the program
+	 */
+	private void execute( ) throws InterruptException {
+		final int i = IP++;
+		switch( op[i] ) {
+			case CPY: if( reg1[i] ) R[ (int)arg1[i] ] = read0( i ); break;
+			case INC: if( reg0[i] ) R[ (int)arg0[i] ]++; break;
+			case DEC: if( reg0[i] ) R[ (int)arg0[i] ]--; break;
+			case ADD: if( reg1[i] ) R[ (int)arg1[i] ] += read0( i ); break;
+			case MUL: if( reg1[i] ) R[ (int)arg1[i] ] *= read0( i ); break;
+			case JNZ: if( read0( i ) != 0 ) IP = i + (int)(reg1[i] ? R[ (int)arg1[i] ] : arg1[i]); break;
+			case TGL: toggle( i + (int)read0( i ) ); break;
+			case OUT: out.output( read0( i ) ); break;
+			case NOP: break;
+			default: throw new RuntimeException( "Invalid opcode " + op[i] + " at " + i );
+		}
+	}
+
+	/**
+	 * Performs the loop idiom that starts at the instruction pointer in a single
+	 * step. The loop counters are decremented to zero, with wrapping arithmetic
+	 * the number of iterations is the initial counter value.
+	 */
+	private void executeFold( ) {
+		final int i = IP;
+		if( fold[i] == FOLD_ADD ) {
+			// target +/-= counter
+			final int counter = (int)arg0[ i + 2 ];
+			final int t = op[i] == DEC && arg0[i] == counter ? i + 1 : i;
+			final long n = R[ counter ];
+			R[ (int)arg0[t] ] += op[t] == INC ? n : -n;
+			R[ counter ] = 0;
+			IP = i + 3;
+		} else {
+			// target +/-= source * outer, using the inner counter
+			final int inner = (int)arg1[i];
+			final int outer = (int)arg0[ i + 4 ];
+			final int t = op[ i + 1 ] == DEC && arg0[ i + 1 ] == inner ? i + 2 : i + 1;
+			final long n = read0( i ) * R[ outer ];
+			R[ (int)arg0[t] ] += op[t] == INC ? n : -n;
+			R[ inner ] = 0;
+			R[ outer ] = 0;
+			IP = i + 6;
+		}
+	}
+
+	/**
+	 * Toggles the instruction at the given index, if it exists
+	 *
+	 * @param idx The index of the instruction
+	 */
+	private void toggle( final int idx ) {
+		if( idx < 0 || idx >= op.length ) return;
+
+		if( arity[ idx ] == 1 ) op[ idx ] = op[ idx ] == INC ? DEC : INC;
+		else if( arity[ idx ] == 2 ) op[ idx ] = op[ idx ] == JNZ ? CPY : JNZ;
+		updateFolds( );
+	}
+
+	/**
+	 * Determines for every instruction whether it starts a loop idiom:
+	 *
+	 * inc/dec x, dec c, jnz c -2 (in any order of the first two) adds or
+	 * subtracts c to x
+	 *
+	 * cpy y c, followed by the above, dec d, jnz d -5 adds or subtracts y * d
+	 */
+	private void updateFolds( ) {
+		for( int i = 0; i < op.length; i++ )
+			fold[i] = isMulLoop( i ) ? FOLD_MUL : isAddLoop( i ) ? FOLD_ADD : FOLD_NONE;
+	}
+
+	/**
+	 * Checks whether the add loop idiom starts at the instruction
+	 *
+	 * @param i The instruction index
+	 * @return True if it is the start of an add loop
+	 */
+	private boolean isAddLoop( final int i ) {
+		if( i + 2 >= op.length ) return false;
+		if( !isStep( i ) || !isStep( i + 1 ) || !isJump( i + 2, -2 ) ) return false;
+
+		final long counter = arg0[ i + 2 ];
+		final boolean first = op[i] == DEC && arg0[i] == counter;
+		final boolean second = op[ i + 1 ] == DEC && arg0[ i + 1 ] == counter;
+		return (first || second) && arg0[i] != arg0[ i + 1 ];
+	}
+
+	/**
+	 * Checks whether the multiplication loop idiom starts at the instruction
+	 *
+	 * @param i The instruction index
+	 * @return True if it is the start of a multiplication loop
+	 */
+	private boolean isMulLoop( final int i ) {
+		if( i + 5 >= op.length ) return false;
+		if( op[i] != CPY || !reg1[i] || !isAddLoop( i + 1 ) ) return false;
+		if( op[ i + 4 ] != DEC || !reg0[ i + 4 ] || !isJump( i + 5, -5 ) || arg0[ i + 5 ] != arg0[ i + 4 ] ) return false;
+
+		// the inner counter is set by the copy, the target and source must be
+		// distinct from both counters
+		final long inner = arg1[i], outer = arg0[ i + 4 ];
+		if( arg0[ i + 3 ] != inner || inner == outer ) return false;
+		final long target = arg0[ i + 1 ] == inner ? arg0[ i + 2 ] : arg0[ i + 1 ];
+		if( target == outer ) return false;
+		return !reg0[i] || (arg0[i] != inner && arg0[i] != outer && arg0[i] != target);
+	}
+
+	/**
+	 * Checks whether the instruction increments or decrements a register
+	 *
+	 * @param i The instruction index
+	 * @return True for an inc or dec of a register
+	 */
+	private boolean isStep( final int i ) {
+		return (op[i] == INC || op[i] == DEC) && reg0[i];
+	}
+
+	/**
+	 * Checks whether the instruction is a conditional jump on a register by a
+	 * literal offset
+	 *
+	 * @param i The instruction index
+	 * @param offset The jump offset
+	 * @return True if the instruction is jnz with register and the offset
+	 */
+	private boolean isJump( final int i, final int offset ) {
+		return op[i] == JNZ && reg0[i] && !reg1[i] && arg1[i] == offset;
+	}
+
+	/**
+	 * Reads the value of the first operand of an instruction
+	 *
+	 * @param i The instruction index
+	 * @return The register value or literal
+	 */
+	private long read0( final int i ) {
+		return reg0[i] ? R[ (int)arg0[i] ] : arg0[i];
+	}
+
+	/**
+	 * Checks whether an operand names a register
+	 *
+	 * @param s The operand string
+	 * @return True if it is a register name
+	 */
+	private static boolean isRegister( final String s ) {
+		return s.length( ) == 1 && s.charAt( 0 ) >= 'a' && s.charAt( 0 ) < 'a' + REGISTERS;
+	}
+
+	/**
+	 * Decodes an operand into its register index or literal value
+	 *
+	 * @param s The operand string
+	 * @return The register index or literal value
+	 */
+	private static long decode( final String s ) {
+		if( isRegister( s ) ) return s.charAt( 0 ) - 'a';
+		try {
+			return Long.parseLong( s );
+		} catch( NumberFormatException nfe ) {
+			throw new RuntimeException( "Invalid register or literal: " + s );
+		}
+	}
+
+	/**
+	 * Interface for a function that consumes the output of the program
+	 *
+	 * @author Joris
+	 */
+	public interface OutputConsumer {
+		/**
+		 * Consumes a single output value
+		 *
+		 * @param value The value to consume
+		 * @throws InterruptException if the consumer wants to interrupt the
+		 *   program execution
+		 */
+		public void output( final long value ) throws InterruptException;
+	}
+}
@@ -1,4 +1,4 @@
-package aoc2016.day25;
+package aoc2016.assembunny;
 
 /**
  * Exception to force quit
@@ -30,4 +30,4 @@ public class InterruptException extends Exception {
 	
 	/** @return The status code */
 	public int getCode( ) { return statuscode; }
-}
\ No newline at end of file
+}
@@ -1,6 +1,6 @@
 package aoc2016.day05;
 
-import aocutil.Util;
+import aoc2016.md5.MD5HashStream;
 
 public class Day05 {
 
@@ -32,11 +32,11 @@ public class Day05 {
 	 * @return The security code for the door
 	 */
 	private static String part1( final String key, final String prefix ) {
+		final MD5HashStream hashes = new MD5HashStream( key );
 		final StringBuilder code = new StringBuilder( );
 		for( long i = 0; i < 1000000000l; i++ ) {
-			final String hash = Util.MD5( key + i );
-			if( hash.startsWith( prefix ) ) {
-				code.append( hash.charAt( 5 ) );
+			if( hashes.startsWith( i, prefix ) ) {
+				code.append( Character.forDigit( hashes.getNibble( i, 5 ), 16 ) );
 			}
 			
 			if( code.length( ) == 8 ) return code.toString( );
@@ -57,19 +57,18 @@ public class Day05 {
 		for( int i = 0; i < code.length; i++ ) code[i] = '_';
 		
 		// simply keep generating hashses until we find the prefix
+		final MD5HashStream hashes = new MD5HashStream( key );
 		int remaining = code.length;
 		for( long i = 0; i < 1000000000l; i++ ) {
-			final String hash = Util.MD5( key + i );
-			if( hash.startsWith( prefix ) ) {
-				// parse as radix 16 to allow hex, will be ignored as they are not
-				// valid index positions anyway
-				final int idx = Integer.parseInt( "" + hash.charAt( 5 ), 16 );
+			if( hashes.startsWith( i, prefix ) ) {
+				// hex values are ignored as they are not valid index positions anyway
+				final int idx = hashes.getNibble( i, 5 );
 				if( idx < 0 || idx >= code.length ) continue;
 				
 				// only write code if the index had no value yet
 				if( code[ idx ] == '_' ) {
 					remaining--;
-					code[ idx ] = hash.charAt( 6 );
+					code[ idx ] = Character.forDigit( hashes.getNibble( i, 6 ), 16 );
 				}
 			}
 			
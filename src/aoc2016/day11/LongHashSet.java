@@ -0,0 +1,101 @@
+package aoc2016.day11;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash set of non-negative long values, avoiding the boxing
+ * and per-entry overhead of a HashSet<Long>
+ *
+ * @author Joris
+ */
+public class LongHashSet {
+	/** The marker for an empty slot */
+	private static final long EMPTY = -1;
+
+	/** The hash table */
+	private long[] table;
+
+	/** The number of values in the set */
+	private int size;
+
+	/**
+	 * Creates a new empty set
+	 *
+	 * @param capacity The expected number of values
+	 */
+	public LongHashSet( final int capacity ) {
+		table = new long[ Integer.highestOneBit( Math.max( capacity, 8 ) * 2 - 1 ) * 2 ];
+		Arrays.fill( table, EMPTY );
+	}
+
+	/**
+	 * Adds a value to the set
+	 *
+	 * @param value The non-negative value to add
+	 * @return True if the value was not yet in the set
+	 */
+	public boolean add( final long value ) {
+		if( value < 0 ) throw new RuntimeException( "Only non-negative values are supported: " + value );
+
+		final int mask = table.length - 1;
+		int idx = hash( value ) & mask;
+		while( table[ idx ] != EMPTY ) {
+			if( table[ idx ] == value ) return false;
+			idx = (idx + 1) & mask;
+		}
+		table[ idx ] = value;
+		if( ++size * 2 > table.length ) grow( );
+		return true;
+	}
+
+	/**
+	 * Checks whether the set contains a value
+	 *
+	 * @param value The value to look for
+	 * @return True iff the value is in the set
+	 */
+	public boolean contains( final long value ) {
+		final int mask = table.length - 1;
+		int idx = hash( value ) & mask;
+		while( table[ idx ] != EMPTY ) {
+			if( table[ idx ] == value ) return true;
+			idx = (idx + 1) & mask;
+		}
+		return false;
+	}
+
+	/** @return The number of values in the set */
+	public int size( ) {
+		return size;
+	}
+
+	/**
+	 * Doubles the table size and reinserts all values
+	 */
+	private void grow( ) {
+		final long[] old = table;
+		if( old.length >= 1 << 30 ) throw new RuntimeException( "Hash set capacity exceeded" );
+		table = new long[ old.length * 2 ];
+		Arrays.fill( table, EMPTY );
+
+		final int mask = table.length - 1;
+		for( final long v : old ) {
+			if( v == EMPTY ) continue;
+			int idx = hash( v ) & mask;
+			while( table[ idx ] != EMPTY ) idx = (idx + 1) & mask;
+			table[ idx ] = v;
+		}
+	}
+
+	/**
+	 * Mixes the bits of the value to spread packed states over the table
+	 *
+	 * @param value The value
+	 * @return The hash code
+	 */
+	private static int hash( final long value ) {
+		long h = value * 0x9E3779B97F4A7C15l;
+		h ^= h >>> 32;
+		return (int)(h ^ (h >>> 16));
+	}
+}
@@ -0,0 +1,161 @@
+package aoc2016.day11;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * The space of facility layouts, encoding every layout as a single long. Only
+ * the floors of the generator and microchip of each element matter, not which
+ * element it is, hence a layout is stored as the elevator floor followed by
+ * the sorted (generator floor, microchip floor) pairs. Layouts that only
+ * differ by a permutation of elements thereby share the same canonical state.
+ *
+ * Instances reuse internal buffers and are not thread-safe.
+ *
+ * @author Joris
+ */
+public class RTFStateSpace {
+	/** The number of floors in the facility */
+	private final int floors;
+
+	/** The number of generator/microchip pairs */
+	private final int pairs;
+
+	/** The number of bits used for the elevator and for every pair */
+	private final int elevbits, pairbits;
+
+	/** Buffers for the unpacked generator and microchip floors */
+	private final int[] gens, chips;
+
+	/** Buffer for the sorted pair codes */
+	private final int[] codes;
+
+	/**
+	 * Creates a new state space
+	 *
+	 * @param floors The number of floors
+	 * @param pairs The number of generator/microchip pairs
+	 */
+	public RTFStateSpace( final int floors, final int pairs ) {
+		if( floors < 1 || floors > 32 ) throw new RuntimeException( "Invalid number of floors: " + floors );
+		this.floors = floors;
+		this.pairs = pairs;
+		this.elevbits = bitsFor( floors );
+		this.pairbits = bitsFor( floors * floors );
+		if( elevbits + pairs * pairbits > 63 ) throw new RuntimeException( "A facility with " + pairs + " elements on " + floors + " floors exceeds the state capacity" );
+
+		this.gens = new int[ pairs ];
+		this.chips = new int[ pairs ];
+		this.codes = new int[ pairs ];
+	}
+
+	/**
+	 * Packs a layout into its canonical state
+	 *
+	 * @param elevator The elevator floor
+	 * @param genfloors The floor of the generator per element
+	 * @param chipfloors The floor of the microchip per element
+	 * @return The packed state
+	 */
+	public long pack( final int elevator, final int[] genfloors, final int[] chipfloors ) {
+		for( int i = 0; i < pairs; i++ ) codes[i] = genfloors[i] * floors + chipfloors[i];
+		Arrays.sort( codes );
+
+		long state = elevator;
+		for( int i = 0; i < pairs; i++ ) state |= (long)codes[i] << (elevbits + i * pairbits);
+		return state;
+	}
+
+	/** @return The state in which all items and the elevator are on the top floor */
+	public long getTarget( ) {
+		final int[] top = new int[ pairs ];
+		Arrays.fill( top, floors - 1 );
+		return pack( floors - 1, top, top );
+	}
+
+	/**
+	 * Checks whether a layout is safe, i.e. no microchip is on a floor with
+	 * another generator unless its own generator is there too
+	 *
+	 * @param genfloors The floor of the generator per element
+	 * @param chipfloors The floor of the microchip per element
+	 * @return True iff the layout is safe
+	 */
+	private boolean isValid( final int[] genfloors, final int[] chipfloors ) {
+		int withgen = 0;
+		for( int i = 0; i < pairs; i++ ) withgen |= 1 << genfloors[i];
+		for( int i = 0; i < pairs; i++ )
+			if( chipfloors[i] != genfloors[i] && (withgen & (1 << chipfloors[i])) != 0 ) return false;
+		return true;
+	}
+
+	/**
+	 * Generates all safe states that are reachable in one elevator move, which
+	 * carries one or two items one floor up or down. Moves are reversible, so
+	 * the same function gives the predecessors of a state.
+	 *
+	 * @param state The packed state
+	 * @param action The action to perform for every next state
+	 */
+	public void forEachNext( final long state, final LongConsumer action ) {
+		final int elevator = (int)(state & ((1 << elevbits) - 1));
+		for( int i = 0; i < pairs; i++ ) {
+			final int code = (int)((state >>> (elevbits + i * pairbits)) & ((1 << pairbits) - 1));
+			gens[i] = code / floors;
+			chips[i] = code % floors;
+		}
+
+		// items are numbered 2 * element for generators and 2 * element + 1 for
+		// microchips
+		for( final int dir : new int[] { 1, -1 } ) {
+			final int to = elevator + dir;
+			if( to < 0 || to >= floors ) continue;
+
+			for( int a = 0; a < 2 * pairs; a++ ) {
+				if( floorOf( a ) != elevator ) continue;
+				move( a, to );
+
+				if( isValid( gens, chips ) ) action.accept( pack( to, gens, chips ) );
+				for( int b = a + 1; b < 2 * pairs; b++ ) {
+					if( floorOf( b ) != elevator ) continue;
+					move( b, to );
+					if( isValid( gens, chips ) ) action.accept( pack( to, gens, chips ) );
+					move( b, elevator );
+				}
+
+				move( a, elevator );
+			}
+		}
+	}
+
+	/**
+	 * Determines the floor of an item in the unpacked buffers
+	 *
+	 * @param item The item number
+	 * @return The floor it resides on
+	 */
+	private int floorOf( final int item ) {
+		return (item & 1) == 0 ? gens[ item >> 1 ] : chips[ item >> 1 ];
+	}
+
+	/**
+	 * Moves an item in the unpacked buffers
+	 *
+	 * @param item The item number
+	 * @param floor The floor to move it to
+	 */
+	private void move( final int item, final int floor ) {
+		if( (item & 1) == 0 ) gens[ item >> 1 ] = floor;
+		else chips[ item >> 1 ] = floor;
+	}
+
+	/**
+	 * Determines the number of bits required to store values below the limit
+	 *
+	 * @param limit The exclusive upper limit of the values
+	 * @return The number of bits
+	 */
+	private static int bitsFor( final int limit ) {
+		return Math.max( 1, 32 - Integer.numberOfLeadingZeros( limit - 1 ) );
+	}
+}
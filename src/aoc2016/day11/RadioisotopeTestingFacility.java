@@ -1,14 +1,20 @@
 package aoc2016.day11;
 
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.Stack;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+/**
+ * The radioisotope testing facility, in which all generators and microchips
+ * have to be moved to the top floor. The minimal number of moves is found by
+ * a bidirectional breadth-first search over the packed canonical states of
+ * the RTFStateSpace, each step growing the smallest of the two frontiers.
+ *
+ * @author Joris
+ */
 public class RadioisotopeTestingFacility {
 	/** The number of floors in the facility */
 	private final int floors;
@@ -16,8 +22,9 @@ public class RadioisotopeTestingFacility {
 	/** The (short) element names */
 	private final String[] elements;
 	
-	/** The initial state of the RTF */
-	final RTFState state;
+	/** The initial floor of every item, generators at even indices followed by
+	 * their microchip */
+	private final int[] items;
 	
 	/**
 	 * Creates a new RTF, using the given list of floor contents to reconstruct
@@ -45,7 +52,7 @@ public class RadioisotopeTestingFacility {
 		}
 		
 		// allocate element to floor array and scan input again to fill it
-		final int[] items = new int[ elmap.size( ) * 2 ];
+		items = new int[ elmap.size( ) * 2 ];
 		int floor = 0;
 		for( final String s : input ) {
 			final Matcher m = Pattern.compile( "(\\w+)(-compatible microchip| generator)" ).matcher( s );
@@ -54,8 +61,6 @@ public class RadioisotopeTestingFacility {
 			}
 			floor++;
 		}
-		
-		this.state = new RTFState( floors, 0, items );
 	}
 	
 	/**
@@ -66,31 +71,48 @@ public class RadioisotopeTestingFacility {
 	 * the fourth floor
 	 */
 	public long getMinimalMoves( ) {
-		final Set<RTFState> visited = new HashSet<>( );
-		final Stack<RTFState> nextstates = new Stack<>( );		
-		nextstates.add( state );
+		final int pairs = items.length / 2;
+		final RTFStateSpace space = new RTFStateSpace( floors, pairs );
+		final int[] gens = new int[ pairs ];
+		final int[] chips = new int[ pairs ];
+		for( int i = 0; i < pairs; i++ ) {
+			gens[i] = items[ 2 * i ];
+			chips[i] = items[ 2 * i + 1 ];
+		}
+		final long start = space.pack( 0, gens, chips );
+		final long target = space.getTarget( );
+		if( start == target ) return 0;
+
+		// search from both ends, the moves are reversible
+		final LongHashSet[] visited = { new LongHashSet( 1024 ), new LongHashSet( 1024 ) };
+		final long[][] frontier = { { start }, { target } };
+		final int[] size = { 1, 1 };
+		visited[0].add( start );
+		visited[1].add( target );
 		
-		// explore states in BFS until we reach the target state
 		int steps = 0;
-		while( !nextstates.empty( ) ) {
+		while( size[0] > 0 && size[1] > 0 ) {
+			// expand the smallest frontier by one step
+			final int side = size[0] <= size[1] ? 0 : 1;
+			final LongHashSet own = visited[ side ];
+			final LongHashSet other = visited[ 1 - side ];
+			final long[][] next = { new long[ Math.max( 16, size[ side ] * 4 ) ] };
+			final int[] nextsize = { 0 };
+			final boolean[] met = { false };
 			
-			// generate set of new states that are reachable from the current set of states
-			final Set<RTFState> explore = new HashSet<>( );
-			while( !nextstates.empty( ) ) {
-				final RTFState s = nextstates.pop( );
-				if( visited.contains( s ) ) continue;
-				visited.add( s );
-				
-				// do we need to explore further?
-				if( s.isTarget( ) ) return steps;
-				
-				final Set<RTFState> next = s.getNextStates( visited );
-				explore.addAll( next );
+			for( int i = 0; i < size[ side ] && !met[0]; i++ ) {
+				space.forEachNext( frontier[ side ][i], n -> {
+					if( met[0] || !own.add( n ) ) return;
+					if( other.contains( n ) ) met[0] = true;
+					if( nextsize[0] == next[0].length ) next[0] = Arrays.copyOf( next[0], nextsize[0] * 2 );
+					next[0][ nextsize[0]++ ] = n;
+				} );
 			}
 			
-			// increase step count and set new states to explore
-			nextstates.addAll( explore );			
 			steps++;
+			if( met[0] ) return steps;
+			frontier[ side ] = next[0];
+			size[ side ] = nextsize[0];
 		}
 		
 		throw new RuntimeException( "Failed to find a solution" );
@@ -99,6 +121,15 @@ public class RadioisotopeTestingFacility {
 	/** @return The current factory lay out */
 	@Override
 	public String toString( ) {
-		return state.toLongString( elements );
+		final StringBuilder res = new StringBuilder( );
+		for( int fl = floors - 1; fl >= 0; fl-- ) {
+			res.append( "F" + (fl+1) + ": " + (fl == 0 ? "E" : " ") ); 
+			
+			for( int i = 0; i < items.length; i++ )
+				res.append( " " + (items[i] == fl ? elements[i] : ". " ) );
+			
+			res.append( "\n" );
+		}
+		return res.toString( );
 	}
 }
@@ -2,6 +2,7 @@ package aoc2016.day12;
 
 import java.util.List;
 
+import aoc2016.assembunny.AssemBunnyVM;
 import aocutil.io.FileReader;
 
 public class Day12 {
@@ -32,8 +33,8 @@ public class Day12 {
 	 * @return The contents of register a at the end of the program
 	 */
 	private static long runProgram( final List<String> input, final long... R ) {
-		final AssemBunnyPC pc = new AssemBunnyPC( );
-		pc.runProgram( input, R );
-		return pc.read( "a" );
+		final AssemBunnyVM vm = new AssemBunnyVM( input );
+		vm.runProgram( R );
+		return vm.getRegister( 'a' );
 	}
 }
@@ -1,8 +1,5 @@
 package aoc2016.day14;
 
-import java.io.File;
-import java.net.URL;
-
 public class Day14 {
 
 	/**
@@ -24,18 +21,16 @@ public class Day14 {
 		System.out.println( "Answer : " + validateKeys( "yjdafjpo", 64, 2016 ) );
 	}
 	
-	private static long validateKeys( final String salt, final int N, final int stretches ) throws Exception {
-		final String keyfile = Day14.class.getResource( "." ).getFile( ) + "/keys_" + salt + "_" + stretches + ".txt";
-		
-		// generate hash keys once
-		if( !new File( keyfile ).exists( ) ) {
-			System.err.println( "Key fie does not exists, writing to " + keyfile );
-			OneTimePad.writeKeys( new URL( "file://" + keyfile ), 30000, salt, stretches );
-		}
-		
+	/**
+	 * Generates keys until the Nth valid key is found
+	 * 
+	 * @param salt The salt to generate keys with
+	 * @param N The number of valid keys to find
+	 * @param stretches The number of times each key is stretched
+	 * @return The index that produces the Nth valid key
+	 */
+	private static long validateKeys( final String salt, final int N, final int stretches ) {
 		final OneTimePad OTP = new OneTimePad( );
-		OTP.readKeys( new URL( "file://" + keyfile ) );
-		
 		return OTP.generateValidKeys( salt, N, stretches );
 	}
 }
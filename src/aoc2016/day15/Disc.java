@@ -40,42 +40,20 @@ public class Disc {
 		return (initial + t) % positions;
 	}
 	
-	/**
-	 * Determines the next time step at which the open slot will be in the
-	 * right position for the capsule to fall through, acccounting for the time
-	 * it has to travel
-	 * 
-	 * @return The next time step at which the capsule may be dropped so that it
-	 *   falls through the open slot
-	 */
-	public long getDropTime( ) {
-		return positions - initial - ID;
+	/** @return The number of positions on the disc */
+	public long getPositions( ) {
+		return positions;
 	}
 	
 	/**
-	 * Aligns two discs by creating a new "virtual" disc that models the interval
-	 * at which both discs have their open slots in front in subsequent time
-	 * steps
+	 * Determines the residue of the drop times modulo the number of positions:
+	 * a capsule dropped at time t reaches the disc at time t + ID, so it falls
+	 * through if initial + t + ID = 0 mod positions
 	 * 
-	 * @param other The disc to align with
-	 * @return The disc that models the combination of the two 
+	 * @return The drop time modulo the number of positions
 	 */
-	protected Disc align( final Disc other ) {
-		// their rotations will align at every common product (only valid for primes!)
-		final long rot = positions * other.positions;
-		
-		// now search for the first t at which both disc are aligned properly
-		// within this new interval
-		long tstart = -1;
-		for( long t = 0; t < rot; t++ ) {
-			if( getSlot( t + ID ) == 0 && other.getSlot( t + other.ID ) == 0 ) {
-				tstart = t;
-				break;
-			}
-		}
-		
-		// build the function that aligns their open slots accordingly
-		return new Disc( ID, rot, (rot - tstart - ID) % rot);
+	public long getDropResidue( ) {
+		return Math.floorMod( -initial - ID, positions );
 	}
 	
 	/**
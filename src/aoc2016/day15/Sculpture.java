@@ -1,13 +1,18 @@
 package aoc2016.day15;
 
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.Stack;
 
 /**
  * A kinetic sculpture that drops a captule through a set of discs with a
  * single opening slot
+ * 
+ * Every disc requires the drop time to be congruent to some residue modulo its
+ * number of positions. The congruences are combined one by one using the
+ * generalised Chinese remainder theorem, in long arithmetic as long as the
+ * combined modulus fits and in BigInteger arithmetic from then on.
  *  
  * @author Joris
  */
@@ -29,21 +34,108 @@ public class Sculpture {
 	 * passes through all discs
 	 * 
 	 * @return The first time at which the button can be pressed
+	 * @throws ArithmeticException if the time exceeds the range of a long, use
+	 *   getTimeToPressExact instead
 	 */
 	public long getTimeToPress( ) {
-		// push them onto a stack in reverse order, so that disc 1 is popped first
-		final Stack<Disc> remaining = new Stack<>( );
-		for( int i = discs.size( ) - 1; i >= 0; i-- )
-			remaining.push( discs.get( i ) );		
-		
-		while( remaining.size( ) > 1 ) {
-			final Disc d1 = remaining.pop( );
-			final Disc d2 = remaining.pop( );
+		return getTimeToPressExact( ).longValueExact( );
+	}
+	
+	/**
+	 * Determines the first time at which we can drop a capsule such that it
+	 * passes through all discs, without bounds on the time
+	 * 
+	 * @return The first time at which the button can be pressed
+	 */
+	public BigInteger getTimeToPressExact( ) {
+		// combine the congruences in long arithmetic while possible
+		long r = 0, m = 1;
+		int i = 0;
+		for( ; i < discs.size( ); i++ ) {
+			final Disc d = discs.get( i );
+			final long m2 = d.getPositions( );
+			final long g = gcd( m, m2 );
+			final long r2 = d.getDropResidue( );
+			if( (r2 - r) % g != 0 ) throw new RuntimeException( "The discs never align: " + discs );
+			
+			// the combined modulus is the least common multiple
+			final long lcm;
+			try {
+				lcm = Math.multiplyExact( m / g, m2 );
+			} catch( ArithmeticException ae ) {
+				break;
+			}
 			
-			remaining.push( d1.align( d2 ) );
+			// solve r + m * k = r2 (mod m2), i.e. k = (r2 - r) / g * (m / g)^-1 (mod m2 / g)
+			final long mg = m2 / g;
+			final long k = mulMod( Math.floorMod( (r2 - r) / g, mg ), inverse( (m / g) % mg, mg ), mg );
+			r += m * k;
+			m = lcm;
 		}
 		
-		return remaining.get( 0 ).getDropTime( );
+		// continue with the remaining discs in BigInteger arithmetic, only the
+		// residues of the combined values modulo the disc size are needed to find
+		// the multiplier k
+		BigInteger R = BigInteger.valueOf( r ), M = BigInteger.valueOf( m );
+		for( ; i < discs.size( ); i++ ) {
+			final Disc d = discs.get( i );
+			final long m2 = d.getPositions( );
+			final BigInteger M2 = BigInteger.valueOf( m2 );
+			final long mmod = M.mod( M2 ).longValue( );
+			final long g = gcd( m2, mmod );
+			final long diff = Math.floorMod( d.getDropResidue( ) - R.mod( M2 ).longValue( ), m2 );
+			if( diff % g != 0 ) throw new RuntimeException( "The discs never align: " + discs );
+			
+			// as M is a multiple of g, (M / g) mod (m2 / g) equals (M mod m2) / g
+			final long mg = m2 / g;
+			final long k = mulMod( diff / g, inverse( (mmod / g) % mg, mg ), mg );
+			R = R.add( M.multiply( BigInteger.valueOf( k ) ) );
+			M = M.multiply( BigInteger.valueOf( mg ) );
+		}
+		return R;
+	}
+	
+	/**
+	 * Computes the greatest common divisor of two positive numbers
+	 * 
+	 * @param a The first number
+	 * @param b The second number
+	 * @return The greatest common divisor
+	 */
+	private static long gcd( final long a, final long b ) {
+		return b == 0 ? a : gcd( b, a % b );
+	}
+	
+	/**
+	 * Computes the modular inverse of a value using the extended Euclidean
+	 * algorithm
+	 * 
+	 * @param a The value, co-prime with the modulus
+	 * @param m The modulus
+	 * @return The inverse of a modulo m
+	 */
+	private static long inverse( final long a, final long m ) {
+		if( m == 1 ) return 0;
+		long r0 = m, r1 = a, s0 = 0, s1 = 1;
+		while( r1 != 0 ) {
+			final long q = r0 / r1;
+			long t = r0 - q * r1; r0 = r1; r1 = t;
+			t = s0 - q * s1; s0 = s1; s1 = t;
+		}
+		return Math.floorMod( s0, m );
+	}
+	
+	/**
+	 * Multiplies two residues modulo m without overflow
+	 * 
+	 * @param a The first residue
+	 * @param b The second residue
+	 * @param m The modulus
+	 * @return a * b mod m
+	 */
+	private static long mulMod( final long a, final long b, final long m ) {
+		if( Math.multiplyHigh( a, b ) == 0 && a * b >= 0 ) return (a * b) % m;
+		return BigInteger.valueOf( a ).multiply( BigInteger.valueOf( b ) ).mod( BigInteger.valueOf( m ) ).longValue( );
 	}
 
 	/**
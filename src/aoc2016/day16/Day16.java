@@ -28,7 +28,7 @@ public class Day16 {
 	 * @param length The required length of the data   
 	 * @return The checksum of the data
 	 */
-	private static String part1( final String input, final int length ) {
-		return DragonChecksum.checkSum( DragonChecksum.generateData( input, length ) );
+	private static String part1( final String input, final long length ) {
+		return new DragonChecksum( input ).checkSum( length );
 	}
 }
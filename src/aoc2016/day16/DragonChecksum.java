@@ -3,48 +3,128 @@ package aoc2016.day16;
 /**
  * Class to generate data via a modified dragon curve and enables computing
  * checksums of generated data to fool the security at the Easter Bunny's HQ
- * 
+ *
+ * The generated data is never materialised. It consists of alternating copies
+ * of the input a and its reversed complement b, separated by the bits of the
+ * regular paper-folding sequence: a d1 b d2 a d3 b ... The checksum of a chunk
+ * of 2^k bits (k >= 1) is one minus the parity of the ones in the chunk, which
+ * follows from prefix counts of ones that are computed in logarithmic time.
+ *
  * @author Joris
  */
 public class DragonChecksum {
-	
+	/** The input bits */
+	private final boolean[] input;
+
+	/** The number of ones in every prefix of the input */
+	private final int[] prefix;
+
 	/**
-	 * Generates a string of length n given the initial input string using the
-	 * modified dragon curve
-	 * 
-	 * @param input The input string
-	 * @param n The required string length 
-	 * @return The new string of length n
+	 * Creates a new dragon curve data generator
+	 *
+	 * @param input The input string of zeroes and ones
 	 */
-	public static String generateData( final String input, final int n ) {
-		String bits = "" + input;
-		
-		while( bits.length( ) < n ) {
-			final StringBuilder b2 = new StringBuilder( );
-			for( int i = bits.length( ) - 1; i >= 0; i-- ) b2.append( (char)('1' - bits.charAt( i ) + '0') );
-			
-			bits = bits + "0" + b2.toString( ); 
+	public DragonChecksum( final String input ) {
+		if( input.isEmpty( ) ) throw new RuntimeException( "The input must not be empty" );
+
+		this.input = new boolean[ input.length( ) ];
+		this.prefix = new int[ input.length( ) + 1 ];
+		for( int i = 0; i < input.length( ); i++ ) {
+			final char c = input.charAt( i );
+			if( c != '0' && c != '1' ) throw new RuntimeException( "Invalid input bit: " + c );
+			this.input[i] = c == '1';
+			prefix[i + 1] = prefix[i] + (c == '1' ? 1 : 0);
 		}
-		
-		return bits.substring( 0, n );
 	}
-	
+
+	/**
+	 * Determines the bit at the given position of the generated data
+	 *
+	 * @param pos The position
+	 * @return The bit at that position
+	 */
+	public boolean getBit( final long pos ) {
+		final int L = input.length;
+		final long block = pos / (L + 1);
+		final int offset = (int)(pos % (L + 1));
+
+		// the separator after the block, or a bit in a copy of a or b
+		if( offset == L ) return getFold( block + 1 );
+		return block % 2 == 0 ? input[ offset ] : !input[ L - 1 - offset ];
+	}
+
+	/**
+	 * Counts the number of ones in the first n bits of the generated data
+	 *
+	 * @param n The length of the prefix
+	 * @return The number of ones
+	 */
+	public long countOnes( final long n ) {
+		final int L = input.length;
+		final long blocks = n / (L + 1);
+		final int rest = (int)(n % (L + 1));
+
+		// complete copies of a and b, with their separators
+		final long ones = prefix[ L ];
+		long count = ((blocks + 1) / 2) * ones + (blocks / 2) * (L - ones) + countFolds( blocks );
+
+		// the remaining bits of the last block
+		if( blocks % 2 == 0 ) count += prefix[ rest ];
+		else count += rest - (ones - prefix[ L - rest ]);
+		return count;
+	}
+
 	/**
-	 * Runs an algorithm to determine the checksum of the input data
-	 * 
-	 * @param input The data as string
-	 * @return The checksum of the data 
+	 * Computes the checksum of the first length bits of the generated data
+	 * without generating the data itself. The data is consumed in chunks of the
+	 * largest power of two that divides the length.
+	 *
+	 * @param length The length of the data
+	 * @return The checksum of the data
 	 */
-	public static String checkSum( final String input ) {
-		String sum = "" + input;
-		while( sum.length( ) % 2 == 0 ) {
-			final StringBuilder newsum = new StringBuilder( );
-			for( int i = 0; i < sum.length( ); i+= 2 ) {
-				newsum.append( sum.charAt( i ) == sum.charAt( i + 1 ) ? "1" : "0" );
+	public String checkSum( final long length ) {
+		if( length <= 0 ) throw new RuntimeException( "Invalid data length: " + length );
+
+		final long chunk = Long.lowestOneBit( length );
+		final long size = length / chunk;
+		if( size > Integer.MAX_VALUE ) throw new RuntimeException( "The checksum of " + length + " bits is too long" );
+
+		final StringBuilder sum = new StringBuilder( (int)size );
+		long prev = 0;
+		for( long i = 1; i <= size; i++ ) {
+			if( chunk == 1 ) {
+				sum.append( getBit( i - 1 ) ? '1' : '0' );
+				continue;
 			}
-			sum = newsum.toString( );
+
+			final long ones = countOnes( i * chunk );
+			sum.append( (ones - prev) % 2 == 0 ? '1' : '0' );
+			prev = ones;
 		}
-		
-		return sum;
+		return sum.toString( );
+	}
+
+	/**
+	 * Determines the j-th bit of the regular paper-folding sequence, i.e. the
+	 * separator that is inserted after the j-th block
+	 *
+	 * @param j The index of the fold, starting at 1
+	 * @return True if the odd part of j is 3 modulo 4
+	 */
+	private static boolean getFold( final long j ) {
+		return ((j >> Long.numberOfTrailingZeros( j )) & 3) == 3;
+	}
+
+	/**
+	 * Counts the ones among the first n bits of the paper-folding sequence, by
+	 * counting the odd numbers m = 3 mod 4 below n / 2^t for every t
+	 *
+	 * @param n The number of folds
+	 * @return The number of ones
+	 */
+	private static long countFolds( final long n ) {
+		long count = 0;
+		for( long m = n; m > 0; m >>= 1 ) count += (m + 1) / 4;
+		return count;
 	}
 }
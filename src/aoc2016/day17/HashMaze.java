@@ -4,7 +4,7 @@ import java.util.EnumSet;
 import java.util.Stack;
 
 import aoc2016.day17.MazePath.Move;
-import aocutil.Util;
+import aoc2016.md5.MD5Hasher;
 import aocutil.geometry.Coord2D;
 import aocutil.geometry.Window2D;
 
@@ -23,6 +23,9 @@ public class HashMaze {
 	/** The pass key to use for the doors */
 	private final String passkey;
 	
+	/** The hasher used to determine the open doors */
+	private final MD5Hasher hasher;
+	
 	/**
 	 * Creates a new HashMaze
 	 * 
@@ -34,6 +37,7 @@ public class HashMaze {
 		this.mazearea = new Window2D( width, height );
 		startpos = new Coord2D( 0, 0 );
 		this.passkey = passkey;
+		this.hasher = new MD5Hasher( );
 	}
 	
 	/**
@@ -141,12 +145,23 @@ public class HashMaze {
 	private EnumSet<Move> nextMoves( final Coord2D pos, final String pathstr ) {
 		// check which doors are open with the given pass key
 		final EnumSet<Move> moves = EnumSet.noneOf( Move.class );
-		final int[] doors = Util.MD5( passkey + pathstr ).chars( ).limit( 4 ).map( i -> (i >='b' && i <= 'f') ? 1 : 0 ).toArray( );
-		if( doors[0] == 1 && pos.y > mazearea.getMinX( ) ) moves.add( Move.Up );
-		if( doors[1] == 1 && pos.y < mazearea.getMaxY( ) ) moves.add( Move.Down );
-		if( doors[2] == 1 && pos.x > mazearea.getMinX( ) ) moves.add( Move.Left );
-		if( doors[3] == 1 && pos.x < mazearea.getMaxX( ) ) moves.add( Move.Right );
+		final byte[] hash = hasher.hash( passkey + pathstr, 0 );
+		if( isOpen( hash, 0 ) && pos.y > mazearea.getMinX( ) ) moves.add( Move.Up );
+		if( isOpen( hash, 1 ) && pos.y < mazearea.getMaxY( ) ) moves.add( Move.Down );
+		if( isOpen( hash, 2 ) && pos.x > mazearea.getMinX( ) ) moves.add( Move.Left );
+		if( isOpen( hash, 3 ) && pos.x < mazearea.getMaxX( ) ) moves.add( Move.Right );
 
 		return moves;
 	}
+	
+	/**
+	 * Checks if the door is open, i.e. its hash character is one of b-f
+	 * 
+	 * @param hash The MD5 digest of the pass key and path
+	 * @param door The door index (up, down, left, right)
+	 * @return True iff the door is open
+	 */
+	private static boolean isOpen( final byte[] hash, final int door ) {
+		return MD5Hasher.nibble( hash, door ) >= 0xb;
+	}
 }
\ No newline at end of file
@@ -1,11 +1,17 @@
 package aoc2016.day18;
 
+import java.util.Arrays;
+
 import aocutil.geometry.Window2D;
 import aocutil.grid.CoordGrid;
-import aocutil.string.StringUtil;
 
 /**
  * A maze of traps that protects the Easter Bunny's second HQ building 
+ * 
+ * A tile is a trap if exactly one of its left and right neighbours in the
+ * previous row is a trap, hence rows are stored as bits in a long[] and the
+ * next row is computed a word at a time as (row << 1) XOR (row >> 1).
+ * 
  * @author Joris
  */
 public class TrapMaze {
@@ -28,39 +34,64 @@ public class TrapMaze {
 		traps = new CoordGrid<>( false );
 		traps.fixWindow( new Window2D( cols, rows ) );
 		
-		// set the traps as described by the first row
-		String row = "" + firstrow;
-		for( int i = 0; i < row.length( ); i++ ) traps.set( i, 0, firstrow.charAt( i ) == CH_TRAP );
-		
-		// and generate the next rows one by one	
-		for( int r = 1; r < rows; r++ ) {
-			row = getNextRow( row );
-			for( int c = 0; c < cols; c++ ) traps.set( c, r, row.charAt( c ) == CH_TRAP );
+		// generate the rows one by one and set the traps they contain
+		long[] row = parseRow( firstrow );
+		long[] next = new long[ row.length ];
+		for( int r = 0; r < rows; r++ ) {
+			for( int c = 0; c < cols; c++ ) traps.set( c, r, (row[c >> 6] & (1l << c)) != 0 );
+			
+			getNextRow( row, next, cols );
+			final long[] tmp = row; row = next; next = tmp;
+		}
+	}
+	
+	/**
+	 * Converts a row description into its bit representation
+	 * 
+	 * @param row The row as string of trap and safe characters
+	 * @return The row as bits, a set bit represents a trap
+	 */
+	private static long[] parseRow( final String row ) {
+		final long[] bits = new long[ Math.max( 1, (row.length( ) + 63) >> 6 ) ];
+		for( int c = 0; c < row.length( ); c++ ) {
+			final char ch = row.charAt( c );
+			if( ch == CH_TRAP ) bits[ c >> 6 ] |= 1l << c;
+			else if( ch != CH_SAFE ) throw new RuntimeException( "Invalid tile: " + ch );
 		}
+		return bits;
 	}
 	
 	/**
-	 * Builds the string that represents the next row of the maze, given the
-	 * specified row
+	 * Computes the next row of the maze from the specified row. Every tile is
+	 * a trap if its left and right neighbours differ, tiles outside the maze are
+	 * considered safe.
 	 * 
 	 * @param row The current row
-	 * @return The next row of the maze
+	 * @param next The array to store the next row in
+	 * @param cols The number of columns in the row
 	 */
-	private static String getNextRow( final String row ) {
-		final int cols = row.length( );
-		final StringBuilder nextrow = new StringBuilder( );
-		
-		// covert row into trap/safe booleans;
-		final int[] traps = ("." + row + "." ).chars( ).map( x -> x == CH_TRAP ? 1 : 0 ).toArray( ); 
-				
-		for( int c = 1; c < cols + 1; c++ ) {
-			final boolean[] t = new boolean[] { traps[c-1] == 1, traps[c] == 1, traps[c+1] == 1 };
-			
-			// apply rules to determine whether this tile is a trap or not
-			final boolean istrap = (t[0] && t[1] && !t[2]) || (!t[0] && t[1] && t[2]) || (t[0] && !t[1] && !t[2]) || (!t[0] && !t[1] && t[2]);
-			nextrow.append( istrap ? CH_TRAP : CH_SAFE );
+	private static void getNextRow( final long[] row, final long[] next, final int cols ) {
+		final int W = row.length;
+		for( int w = 0; w < W; w++ ) {
+			final long left = (row[w] << 1) | (w > 0 ? row[w - 1] >>> 63 : 0);
+			final long right = (row[w] >>> 1) | (w + 1 < W ? row[w + 1] << 63 : 0);
+			next[w] = left ^ right;
 		}
-		return nextrow.toString( );
+		
+		// clear the bits beyond the last column
+		if( (cols & 63) != 0 ) next[ W - 1 ] &= (1l << cols) - 1;
+	}
+	
+	/**
+	 * Counts the traps in a row
+	 * 
+	 * @param row The row as bits
+	 * @return The number of traps
+	 */
+	private static int countTraps( final long[] row ) {
+		int traps = 0;
+		for( final long w : row ) traps += Long.bitCount( w );
+		return traps;
 	}
 	
 	/**
@@ -71,24 +102,57 @@ public class TrapMaze {
 	}
 	
 	/**
-	 * Counts the number of safe spaces in the maze without storing the actual maze
+	 * Counts the number of safe spaces in the maze without storing the actual
+	 * maze. The rows are checked for a cycle using Brent's algorithm, once the
+	 * rows repeat the remaining count follows from the cycle.
 	 * 
 	 * @param firstrow The initial row of the maze
 	 * @param rows The number of rows of the maze
 	 * @return The number of safe spaces in it
 	 */
-	public static long countSafe( final String firstrow, final int rows ) {
-		String row = "" + firstrow;
-		long safe = StringUtil.count( row, CH_SAFE ); 
+	public static long countSafe( final String firstrow, final long rows ) {
+		final int cols = firstrow.length( );
+		long[] row = parseRow( firstrow );
+		long[] next = new long[ row.length ];
+		
+		// the row that is compared against to detect a cycle and the number of
+		// traps counted before it
+		final long[] saved = row.clone( );
+		long savedidx = 0, savedtraps = 0;
+		long power = 1;
 		
-		// generate the next rows one by one, count the safe tiles and discard the
-		// previous row that we no longer need
-		for( int r = 1; r < rows; r++ ) {
-			row = getNextRow( row );
-			safe += StringUtil.count( row, CH_SAFE );
+		long traps = 0;
+		for( long r = 0; r < rows; r++ ) {
+			traps += countTraps( row );
+			getNextRow( row, next, cols );
+			final long[] tmp = row; row = next; next = tmp;
+			
+			// does row r + 1 repeat the saved row?
+			if( Arrays.equals( row, saved ) ) {
+				final long length = r + 1 - savedidx;
+				final long cycletraps = traps - savedtraps;
+				final long remaining = rows - (r + 1);
+				
+				// skip all complete cycles and generate the rows that remain
+				traps += Math.multiplyExact( remaining / length, cycletraps );
+				for( long i = 0; i < remaining % length; i++ ) {
+					traps += countTraps( row );
+					getNextRow( row, next, cols );
+					final long[] t = row; row = next; next = t;
+				}
+				return Math.multiplyExact( rows, cols ) - traps;
+			}
+			
+			// save a new row to compare against every power of two steps
+			if( r + 1 - savedidx == power ) {
+				System.arraycopy( row, 0, saved, 0, row.length );
+				savedidx = r + 1;
+				savedtraps = traps;
+				power *= 2;
+			}
 		}
 		
-		return safe;
+		return Math.multiplyExact( rows, cols ) - traps;
 	}	
 	
 	/** @return A visual representation of the maze */
@@ -1,72 +1,150 @@
 package aoc2016.day19;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
 
 /**
  * A nice and friendly game of White Elephant Party
- * 
+ *
+ * The simple game, in which elves steal from their left neighbour, is the
+ * Josephus problem with every second elf eliminated and has a closed form
+ * solution. The complex game is simulated on a circular array of next-indices,
+ * keeping track of the elf before the one across the circle.
+ *
  * @author Joris
  */
 public class WhiteElephantParty {
 	/**
 	 * Plays a single game of WEP and returns the elf that will get all the
 	 * presents when the game ends
-	 * 
+	 *
 	 * @param N The number of players
 	 * @return The index of the elf with all the winning presents (starting at 1)
 	 */
 	public static int playSimple( final int N ) {
-		// initiate array of elves
-		final int[] elves = new int[ N ];
-		IntStream.range( 0, N ).forEach( i -> elves[i] = 1 );
-		
-		int curr = 0;
-		while( true ) {
-			int next = (curr + 1) % N;
-			while( elves[next] == 0 ) {
-				next = (next + 1) % N;
-				// if no other player has presents, this player wins
-				if( next == curr ) return (curr + 1);
-			}
-
-			if( elves[curr] > 0 ) {
-				elves[curr] += elves[next];
-				elves[next] = 0;
-			}
-			
-			curr = next;
-		}
+		if( N < 1 ) throw new IllegalArgumentException( "Invalid number of players: " + N );
+
+		// every round of the circle removes half the elves, the winner follows
+		// from the number of elves above the largest power of two
+		return 2 * (N - Integer.highestOneBit( N )) + 1;
 	}
-	
+
 	/**
 	 * Plays a single game of WEP and returns the elf that will get all the
 	 * presents when the game ends. This time players steal presents from the
 	 * player on the other side of the circle and players without presents are
 	 * removed from the circle.
-	 * 
+	 *
 	 * @param N The number of players
 	 * @return The index of the elf with all the winning presents (starting at 1)
 	 */
 	public static int playComplex( final int N ) {
-		// initiate presents list, which doubles a a list of active players
-		final List<Integer> elves = new ArrayList<>( N );
-		IntStream.range( 0, N ).forEach( i -> elves.add( i + 1 ) );
-		
-		// the index of the current player
-		int curr = 0;
-		while( elves.size( ) > 1 ) {
-			final int rem = elves.size( );
-			if( rem % 10000 == 0 ) System.out.println( elves.size( ) );
-
-			final int target = (curr + (int)( rem / 2 )) % rem;
-			elves.remove( target );
-			curr = (curr + (target > curr ? 1 : 0)) % (rem - 1);
-			
+		final Circle circle = new Circle( N, true );
+		while( circle.hasNext( ) ) circle.nextInt( );
+		return circle.getWinner( );
+	}
+
+	/**
+	 * Simulates the simple game and returns the elves in the order in which
+	 * they are removed from the game
+	 *
+	 * @param N The number of players
+	 * @return The stream of the N - 1 removed elves (starting at 1)
+	 */
+	public static IntStream getEliminationsSimple( final int N ) {
+		return stream( new Circle( N, false ) );
+	}
+
+	/**
+	 * Simulates the complex game and returns the elves in the order in which
+	 * they are removed from the game
+	 *
+	 * @param N The number of players
+	 * @return The stream of the N - 1 removed elves (starting at 1)
+	 */
+	public static IntStream getEliminationsComplex( final int N ) {
+		return stream( new Circle( N, true ) );
+	}
+
+	/**
+	 * Wraps a circle in a sequential stream
+	 *
+	 * @param circle The circle to play
+	 * @return The stream of eliminated elves
+	 */
+	private static IntStream stream( final Circle circle ) {
+		return StreamSupport.intStream( Spliterators.spliterator( circle, circle.remaining - 1, Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL ), false );
+	}
+
+	/**
+	 * The circle of elves as array of next-indices, that eliminates one elf per
+	 * turn
+	 */
+	private static class Circle implements PrimitiveIterator.OfInt {
+		/** The index of the next elf in the circle, for every elf */
+		private final int[] next;
+
+		/** True to steal across the circle, false to steal from the neighbour */
+		private final boolean across;
+
+		/** The elf before the one that is eliminated next */
+		private int before;
+
+		/** The number of elves that are still in the game */
+		private int remaining;
+
+		/**
+		 * Creates a new circle of elves
+		 *
+		 * @param N The number of elves
+		 * @param across True to steal across the circle
+		 */
+		private Circle( final int N, final boolean across ) {
+			if( N < 1 ) throw new IllegalArgumentException( "Invalid number of players: " + N );
+
+			this.next = new int[ N ];
+			for( int i = 0; i < N; i++ ) next[i] = i + 1;
+			next[ N - 1 ] = 0;
+
+			this.across = across;
+			this.remaining = N;
+			this.before = across ? (N / 2 - 1 + N) % N : 0;
+		}
+
+		/** @return True while more than one elf is in the game */
+		@Override
+		public boolean hasNext( ) {
+			return remaining > 1;
+		}
+
+		/**
+		 * Plays a single turn
+		 *
+		 * @return The elf that is removed from the game (starting at 1)
+		 */
+		@Override
+		public int nextInt( ) {
+			if( remaining <= 1 ) throw new NoSuchElementException( );
+
+			final int victim = next[ before ];
+			next[ before ] = next[ victim ];
+
+			// the next victim is the next elf after the current one when stealing
+			// from the neighbour. Across the circle it shifts one further only if
+			// an odd number of elves was left.
+			if( !across || remaining % 2 == 1 ) before = next[ before ];
+			remaining--;
+			return victim + 1;
+		}
+
+		/** @return The winner of the game (starting at 1) */
+		private int getWinner( ) {
+			if( remaining > 1 ) throw new IllegalStateException( "The game has not ended" );
+			return before + 1;
 		}
-		
-		// get the index of the last remaining player
-		return elves.get( 0 );
 	}
 }
@@ -1,190 +1,303 @@
 package aoc2016.day20;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.NoSuchElementException;
 
 /**
  * The firewall at the Easter Bunny's HQ
- * 
+ *
+ * The blacklist rules are kept sorted on their start address in primitive
+ * arrays, next to the disjoint blocked ranges that are obtained by merging
+ * them. The blocked ranges are built by a single sweep over the sorted rules,
+ * lookups use binary search and adding or removing a rule only updates the
+ * blocked ranges that it touches.
+ *
  * @author Joris
  */
 public class Firewall {
-	/* The set of IP rules in this firewall */
-	private final List<IPRange> rules;
-
 	/** The max IP value */
 	private final long MAX_IP;
-	
+
+	/** The start and end address of every rule, sorted by start address */
+	private long[] rulestart, ruleend;
+
+	/** The number of rules */
+	private int rules;
+
+	/** The first and last address of every blocked range, in order */
+	private long[] lo, hi;
+
+	/** The number of blocked ranges */
+	private int ranges;
+
 	/**
 	 * Creates a new firewall from a ruleset
-	 * 
+	 *
 	 * @param rules The rule set to initialise the firewall with
 	 * @param maxIP The maximum IP address to consider (inclusive)
 	 */
 	public Firewall( final List<String> rules, final long maxIP ) {
-		// parse IP ranges and sort on IP
-		List<IPRange> rset = new ArrayList<>( rules.stream( ).map( IPRange::fromString ).toList( ) );
-		
-		// set max IP and merge rules 
 		this.MAX_IP = maxIP;
 
-		// make sure the rule set if as compact as it can be by merging ranges
-		// try to merge each range with every other range
-		for( int i = 0; i < rset.size( ) - 1; i++ ) {
-			for( int j = i + 1; j < rset.size( ); j++ ) {
-
-				// only merge overlapping ranges
-				if( !rset.get( i ).overlaps( rset.get( j ) ) ) continue;
-
-				// there is overlap, merge them
-				final IPRange r1 = rset.remove( j );
-				final IPRange r2 = rset.remove( i );
-				
-				// insert at index to preserve list sorting
-				rset.add( i, r1.merge( r2 ) );
-				
-				// decrease i by one to consider the newly added rule and restart
-				// pair-wise evaluation
-				i--; 
-				break;
-			}
-		}		
-		
-		// sort on IP
-		rset.sort( IPRange::compareTo );
-		this.rules = rset;
+		final int N = rules.size( );
+		final long[] start = new long[ N ];
+		final long[] end = new long[ N ];
+		for( int i = 0; i < N; i++ ) {
+			// parse the start-end digits directly, without intermediate strings
+			final String r = rules.get( i );
+			final int dash = r.indexOf( '-' );
+			if( dash <= 0 ) throw new IllegalArgumentException( "Invalid IP range: " + r );
+			start[i] = parseAddress( r, 0, dash );
+			int len = r.length( );
+			while( len > dash + 1 && Character.isWhitespace( r.charAt( len - 1 ) ) ) len--;
+			end[i] = parseAddress( r, dash + 1, len );
+			checkRule( start[i], end[i] );
+		}
+
+		// sort the rules on their start address by sorting keys that hold the
+		// start address and the index of the rule
+		final int idxbits = Math.max( 1, 32 - Integer.numberOfLeadingZeros( N ) );
+		if( 64 - Long.numberOfLeadingZeros( maxIP ) + idxbits > 63 ) throw new RuntimeException( "Too many rules for the IP range" );
+		final long[] keys = new long[ N ];
+		for( int i = 0; i < N; i++ ) keys[i] = (start[i] << idxbits) | i;
+		Arrays.sort( keys );
+
+		this.rules = N;
+		this.rulestart = new long[ Math.max( N, 16 ) ];
+		this.ruleend = new long[ Math.max( N, 16 ) ];
+		for( int i = 0; i < N; i++ ) {
+			final int idx = (int)(keys[i] & ((1l << idxbits) - 1));
+			rulestart[i] = start[ idx ];
+			ruleend[i] = end[ idx ];
+		}
+
+		// sweep the sorted rules once to merge overlapping and adjacent rules
+		this.lo = new long[ Math.max( N, 16 ) ];
+		this.hi = new long[ Math.max( N, 16 ) ];
+		this.ranges = merge( 0, N, lo, hi, 0 );
 	}
-	
+
 	/**
 	 * Determines the first available IP address not blocked by any of the FW's
 	 * rules
-	 * 
+	 *
 	 * @return The IP Address
 	 */
 	public long getFirstAllowedIP( ) {
-		long ip = 0;
-		int ruleidx = 0;
-		
-		while( ruleidx < rules.size( ) ) {
-			// check if this rule blocks the IP
-			final IPRange rule = rules.get( ruleidx );
-			
-			// yes, try the next IP outside this rule
-			if( rule.contains( ip ) ) ip = rule.end + 1;
-			
-			// try next rule
-			ruleidx++;
-		}
-		
-		if( ip >= MAX_IP )		
-			throw new RuntimeException( "Failed to find any non-blocked IP" );
-		
+		final long ip = ranges > 0 && lo[0] == 0 ? hi[0] + 1 : 0;
+		if( ip > MAX_IP ) throw new RuntimeException( "Failed to find any non-blocked IP" );
 		return ip;
 	}
-	
+
 	/**
 	 * Determines the number of available IP addresses given the current rule set
-	 * 
+	 *
 	 * @return The number of IPs available
 	 */
-	public long getAvailableIPs( ) {		
-		// okay, all mergers have been performed. Compute available IPs using only
-		// IP ranges that do not overlap
+	public long getAvailableIPs( ) {
 		long blocked = 0;
-		for( final IPRange range : rules ) blocked += range.size( );
-		return new IPRange( 0, MAX_IP ).size( ) - blocked;
+		for( int i = 0; i < ranges; i++ ) blocked += hi[i] - lo[i] + 1;
+		return MAX_IP + 1 - blocked;
+	}
+
+	/**
+	 * Checks whether an IP address is allowed by the firewall
+	 *
+	 * @param ip The IP address
+	 * @return True iff no rule blocks the address
+	 */
+	public boolean isAllowed( final long ip ) {
+		if( ip < 0 || ip > MAX_IP ) return false;
+		final int r = findRange( ip );
+		return r < 0 || hi[r] < ip;
 	}
-	
-	
+
 	/**
-	 * A range of IP addresses
+	 * Adds a blacklist rule to the firewall
+	 *
+	 * @param start The first address blocked by the rule
+	 * @param end The last address blocked by the rule
 	 */
-	private static class IPRange implements Comparable<IPRange> {
-		/** The start and end of the range */
-		private final long start, end;
-		
-		/**
-		 * Creates a new IP range
-		 * 
-		 * @param start The start of the range
-		 * @param end The end of the range
-		 */
-		public IPRange( final long start, final long end ) {
-			this.start = start;
-			this.end = end;
-			
-			if( start >  end ) throw new RuntimeException( "TOo HIgh" );
-		}
-		
-		/**
-		 * Checks if this range contains an IP address
-		 * 
-		 * @param ip The IP address
-		 * @return True iff this range covers the address
-		 */
-		public boolean contains( final long ip ) {
-			return start <= ip && ip <= end;
-		}
-		
-		/**
-		 * Compares two IP address ranges upon their start addresses
-		 * 
-		 * @param ip The other IP
-		 * @return The difference of this.start and ip.start
-		 */
-		@Override
-		public int compareTo( IPRange ip ) {
-			return Long.compare( start, ip.start );
+	public void addRule( final long start, final long end ) {
+		checkRule( start, end );
+
+		// insert the rule in order of start address
+		final int pos = upperBound( rulestart, rules, start );
+		if( rules == rulestart.length ) {
+			rulestart = Arrays.copyOf( rulestart, rules * 2 );
+			ruleend = Arrays.copyOf( ruleend, rules * 2 );
 		}
-		
-		/**
-		 * Checks if the specified IP range (partially) overlaps this one
-		 * 
-		 * @param range The range to test
-		 * @return True if there is overlap between the range
-		 */
-		public boolean overlaps( final IPRange range ) {
-			return range.end >= start && range.start <= end;
+		System.arraycopy( rulestart, pos, rulestart, pos + 1, rules - pos );
+		System.arraycopy( ruleend, pos, ruleend, pos + 1, rules - pos );
+		rulestart[ pos ] = start;
+		ruleend[ pos ] = end;
+		rules++;
+
+		// replace all ranges that overlap or are adjacent to the rule by a single
+		// merged range
+		int first = findRange( start - 1 );
+		if( first < 0 || hi[ first ] < start - 1 ) first++;
+		final int last = findRange( end + 1 );
+		final long newlo = first <= last ? Math.min( start, lo[ first ] ) : start;
+		final long newhi = first <= last ? Math.max( end, hi[ last ] ) : end;
+		replaceRanges( first, last + 1, new long[] { newlo }, new long[] { newhi }, 1 );
+	}
+
+	/**
+	 * Removes a blacklist rule from the firewall
+	 *
+	 * @param start The first address blocked by the rule
+	 * @param end The last address blocked by the rule
+	 */
+	public void removeRule( final long start, final long end ) {
+		int pos = upperBound( rulestart, rules, start - 1 );
+		while( pos < rules && rulestart[ pos ] == start && ruleend[ pos ] != end ) pos++;
+		if( pos >= rules || rulestart[ pos ] != start ) throw new IllegalArgumentException( "No such rule: " + start + "-" + end );
+
+		System.arraycopy( rulestart, pos + 1, rulestart, pos, rules - pos - 1 );
+		System.arraycopy( ruleend, pos + 1, ruleend, pos, rules - pos - 1 );
+		rules--;
+
+		// all rules that make up the blocked range containing the removed rule
+		// start within that range, merge them again
+		final int r = findRange( start );
+		final int from = upperBound( rulestart, rules, lo[r] - 1 );
+		final int to = upperBound( rulestart, rules, hi[r] );
+		final long[] newlo = new long[ to - from ];
+		final long[] newhi = new long[ to - from ];
+		replaceRanges( r, r + 1, newlo, newhi, merge( from, to, newlo, newhi, 0 ) );
+	}
+
+	/**
+	 * Iterates over the ranges of allowed IP addresses, in order
+	 *
+	 * @return Iterator of the allowed ranges, each as { first, last } address
+	 */
+	public Iterator<long[]> getAllowedRanges( ) {
+		return new Iterator<long[]>( ) {
+			/** The blocked range before the next allowed range, -1 for none */
+			private int r = ranges > 0 && lo[0] == 0 ? 0 : -1;
+
+			@Override
+			public boolean hasNext( ) {
+				return r < 0 || (r < ranges && hi[r] < MAX_IP);
+			}
+
+			@Override
+			public long[] next( ) {
+				if( !hasNext( ) ) throw new NoSuchElementException( );
+				final long first = r < 0 ? 0 : hi[r] + 1;
+				final long last = r + 1 < ranges ? lo[ r + 1 ] - 1 : MAX_IP;
+				r++;
+				return new long[] { first, last };
+			}
+		};
+	}
+
+	/**
+	 * Merges the consecutive rules in the given range of the rule arrays into
+	 * disjoint blocked ranges
+	 *
+	 * @param from The first rule to merge
+	 * @param to The end of the rules to merge (exclusive)
+	 * @param outlo The array to store the first address of every range in
+	 * @param outhi The array to store the last address of every range in
+	 * @param offset The index of the first range in the output arrays
+	 * @return The number of ranges written
+	 */
+	private int merge( final int from, final int to, final long[] outlo, final long[] outhi, final int offset ) {
+		int n = offset;
+		for( int i = from; i < to; i++ ) {
+			if( n > offset && rulestart[i] <= outhi[ n - 1 ] + 1 ) {
+				outhi[ n - 1 ] = Math.max( outhi[ n - 1 ], ruleend[i] );
+			} else {
+				outlo[n] = rulestart[i];
+				outhi[n] = ruleend[i];
+				n++;
+			}
 		}
-		
-		/**
-		 * Merges this IP range with the other (partially) overlapping ranges
-		 * 
-		 * @param range The other IP range
-		 * @return The new combined range
-		 */
-		public IPRange merge( final IPRange range ) {
-			if( !overlaps( range) ) throw new IllegalArgumentException( "The IP Range " + range + " does not overlap with " + this );
-			
-			return new IPRange( Math.min( start, range.start), Math.max( end, range.end ) );
+		return n - offset;
+	}
+
+	/**
+	 * Replaces the blocked ranges from index first up to last by new ranges
+	 *
+	 * @param first The index of the first range to replace
+	 * @param last The end index of the ranges to replace (exclusive)
+	 * @param newlo The first addresses of the new ranges
+	 * @param newhi The last addresses of the new ranges
+	 * @param count The number of new ranges
+	 */
+	private void replaceRanges( final int first, final int last, final long[] newlo, final long[] newhi, final int count ) {
+		final int size = ranges - (last - first) + count;
+		if( size > lo.length ) {
+			lo = Arrays.copyOf( lo, Math.max( size, lo.length * 2 ) );
+			hi = Arrays.copyOf( hi, lo.length );
 		}
-		
-		/**
-		 * Bound the 
-		 */
-		
-		/** @return The size of this range (the IPs it spans) */
-		public long size( ) { return end - start + 1; }
-		
-		/** @return The IP range */
-		@Override
-		public String toString( ) {
-			return start + "-" + end;
+		System.arraycopy( lo, last, lo, first + count, ranges - last );
+		System.arraycopy( hi, last, hi, first + count, ranges - last );
+		System.arraycopy( newlo, 0, lo, first, count );
+		System.arraycopy( newhi, 0, hi, first, count );
+		ranges = size;
+	}
+
+	/**
+	 * Finds the last blocked range that starts at or before the address
+	 *
+	 * @param ip The IP address
+	 * @return The index of the range, -1 if all ranges start after the address
+	 */
+	private int findRange( final long ip ) {
+		return upperBound( lo, ranges, ip ) - 1;
+	}
+
+	/**
+	 * Finds the first index in the sorted array prefix that holds a value larger
+	 * than the key
+	 *
+	 * @param values The sorted values
+	 * @param n The number of values to consider
+	 * @param key The key to search for
+	 * @return The index of the first value larger than key, n if there is none
+	 */
+	private static int upperBound( final long[] values, final int n, final long key ) {
+		int l = 0, h = n;
+		while( l < h ) {
+			final int m = (l + h) >>> 1;
+			if( values[m] <= key ) l = m + 1;
+			else h = m;
 		}
-		
-		/**
-		 * Creates an IP range from a string
-		 * 
-		 * @param input The string input as start-end
-		 * @return The IP Range
-		 */
-		public static IPRange fromString( final String input ) {
-			final Matcher m = Pattern.compile( "(\\d+)-(\\d+)" ).matcher( input );
-			if( !m.find( ) ) throw new IllegalArgumentException( "Invalid IP range: " + input );
-			
-			return new IPRange( Long.parseLong( m.group( 1 ) ), Long.parseLong( m.group( 2 ) ) );
+		return l;
+	}
+
+	/**
+	 * Parses an IP address from part of a rule string
+	 *
+	 * @param rule The rule string
+	 * @param from The index of the first digit
+	 * @param to The end index of the digits (exclusive)
+	 * @return The address
+	 */
+	private static long parseAddress( final String rule, final int from, final int to ) {
+		if( from >= to || to - from > 18 ) throw new IllegalArgumentException( "Invalid IP range: " + rule );
+		long v = 0;
+		for( int i = from; i < to; i++ ) {
+			final char c = rule.charAt( i );
+			if( c < '0' || c > '9' ) throw new IllegalArgumentException( "Invalid IP range: " + rule );
+			v = v * 10 + (c - '0');
 		}
+		return v;
+	}
+
+	/**
+	 * Checks that a rule is a valid range within the IP address space
+	 *
+	 * @param start The start of the rule
+	 * @param end The end of the rule
+	 */
+	private void checkRule( final long start, final long end ) {
+		if( start < 0 || end < start || end > MAX_IP ) throw new IllegalArgumentException( "Invalid IP range: " + start + "-" + end );
 	}
 }
@@ -1,194 +1,425 @@
 package aoc2016.day21;
 
-import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import aocutil.collections.CollectionUtil;
-import aocutil.string.StringUtil;
-
 /**
  * Scrambled passwords using the specified list of instructions
- * 
+ *
+ * The instructions are parsed once into operations. For a given password
+ * length they are compiled into a program that works in place on a char
+ * buffer. Letter swaps do not depend on positions, hence they are deferred
+ * into a single relabelling of the letters at the end. All other instructions
+ * are permutations of positions that are composed into one permutation per
+ * letter rotation, selected by the index of the letter. Every instruction has
+ * an exact inverse, so unscrambling is compiled the same way from the inverted
+ * instructions in reverse order.
+ *
+ * The programs are cached for the last password length, hence a scrambler
+ * must not be shared between threads.
+ *
  * @author Joris
  */
 public class PasswordScrambler {
-	/** The scrambling instructions */
-	private final List<String> instructions;
-	
-	/** The current password that is being scrambled */
-	private String password;
-	
+	/** The operation kinds */
+	private static final int SWAP_POS = 0, SWAP_LETTER = 1, ROTATE_LEFT = 2, ROTATE_RIGHT = 3, ROTATE_LETTER = 4, REVERSE = 5, MOVE = 6;
+
+	/** The instruction patterns, indexed by operation kind */
+	private static final Pattern[] PATTERNS = {
+			Pattern.compile( "swap position (\\d+) with position (\\d+)" ),
+			Pattern.compile( "swap letter (\\w) with letter (\\w)" ),
+			Pattern.compile( "rotate (left) (\\d+) step" ),
+			Pattern.compile( "rotate (right) (\\d+) step" ),
+			Pattern.compile( "rotate based on position of letter (\\w)" ),
+			Pattern.compile( "reverse positions (\\d+) through (\\d+)" ),
+			Pattern.compile( "move position (\\d+) to position (\\d+)" )
+	};
+
+	/** The size of the relabelling tables, all instruction letters are ASCII */
+	private static final int LETTERS = 128;
+
+	/** The kind of every operation */
+	private final int[] kind;
+
+	/** The operands of every operation, positions or letters */
+	private final int[] x, y;
+
+	/** The minimal password length for which all positions are valid */
+	private final int minlength;
+
+	/** The scramble and unscramble programs for the last password length */
+	private Program forward, inverse;
+
 	/**
 	 * Creates a new password scrambler with the list of instructions to scramble
-	 * 
+	 *
 	 * @param instructions The list of scrambling instructions
 	 */
 	public PasswordScrambler( final List<String> instructions ) {
-		this.instructions = new ArrayList<>( instructions );
-	}
-	
-	/**
-	 * Tries to unscramble the password by testing various input keys and see
-	 * which one leads to the requested password
-	 * 
-	 * @param passwrd The password we have
-	 * @return The key that lead to the password
-	 */
-	public String unscramble( final String passwrd ) {
-		// generate all combinations of characters
-		final Set<Character> passchars = new HashSet<Character>( );
-		for( final char c : "abcdefgh".toCharArray( ) ) passchars.add( c );
-		final List<List<Character>> keys = CollectionUtil.generatePermutations( passchars );
-		
-		// and try them all
-		for( final List<Character> key : keys ) {
-			final StringBuilder skey = new StringBuilder( );
-			for( final char c : key ) skey.append( c );
-			
-			final String pkey = skey.toString( );
-			if( scramble( pkey ).equals( passwrd ) ) return pkey;
+		final int N = instructions.size( );
+		kind = new int[ N ];
+		x = new int[ N ];
+		y = new int[ N ];
+
+		int maxpos = -1;
+		for( int i = 0; i < N; i++ ) {
+			final String instr = instructions.get( i );
+			kind[i] = -1;
+			for( int k = 0; k < PATTERNS.length && kind[i] < 0; k++ ) {
+				final Matcher m = PATTERNS[k].matcher( instr );
+				if( !m.find( ) ) continue;
+
+				kind[i] = k;
+				switch( k ) {
+					case SWAP_LETTER: x[i] = m.group( 1 ).charAt( 0 ); y[i] = m.group( 2 ).charAt( 0 ); break;
+					case ROTATE_LEFT: case ROTATE_RIGHT: x[i] = Integer.parseInt( m.group( 2 ) ); break;
+					case ROTATE_LETTER: x[i] = m.group( 1 ).charAt( 0 ); break;
+					default:
+						x[i] = Integer.parseInt( m.group( 1 ) );
+						y[i] = Integer.parseInt( m.group( 2 ) );
+						maxpos = Math.max( maxpos, Math.max( x[i], y[i] ) );
+				}
+			}
+
+			// no instruction was matched
+			if( kind[i] < 0 ) throw new IllegalArgumentException( "Invalid instruction: " + instr );
 		}
-		
-		throw new RuntimeException( "Failed to unscramble the password" );
+		minlength = Math.max( 1, maxpos + 1 );
 	}
 
 	/**
 	 * Performs all the instructions to scramble the password from the input
-	 * 
+	 *
 	 * @param input The input key to scramble
 	 * @return The scrambled password
 	 */
-	public String scramble( final String input  ) {
-		password = "" + input;
-		for( final String instr : instructions ) {
-			Matcher m = Pattern.compile( "swap position (\\d+) with position (\\d+)" ).matcher( instr );
-			if( m.find( ) ) {
-				swapPosition( Integer.parseInt( m.group( 1 ) ), Integer.parseInt( m.group( 2 ) ) );
-				continue;
-			}
-			
-			m = Pattern.compile( "swap letter (\\w) with letter (\\w)" ).matcher( instr );
-			if( m.find( ) ) {
-				swapLetters( m.group( 1 ).charAt( 0 ), m.group( 2 ).charAt( 0 ) );
-				continue;
-			}
-				
-			m = Pattern.compile( "rotate (left|right) (\\d+) step" ).matcher( instr );
-			if( m.find( ) ) {
-				rotate( m.group( 1 ).equals( "left" ), Integer.parseInt( m.group( 2 ) ) );
-				continue;
-			}
-	
-			m = Pattern.compile( "rotate based on position of letter (\\w)" ).matcher( instr );
-			if( m.find( ) ) {
-				rotate( m.group( 1 ).charAt( 0 ) );
-				continue;
-			}
-	
-			m = Pattern.compile( "reverse positions (\\d+) through (\\d+)" ).matcher( instr );
-			if( m.find( ) ) {
-				reverse( Integer.parseInt( m.group( 1 ) ), Integer.parseInt( m.group( 2 ) ) );
-				continue;
-			}
-	
-			m = Pattern.compile( "move position (\\d+) to position (\\d+)" ).matcher( instr );
-			if( m.find( ) ) {
-				move( Integer.parseInt( m.group( 1 ) ), Integer.parseInt( m.group( 2 ) ) );
-				continue;
-			}
-
-			
-			// no instruction was matched
-			throw new IllegalArgumentException( "Invalid instruction: " + instr );
-		}
+	public String scramble( final String input ) {
+		final char[] pwd = input.toCharArray( );
+		scramble( pwd, pwd.length );
+		return new String( pwd );
+	}
 
-		return password;
+	/**
+	 * Scrambles a batch of passwords of equal length in place
+	 *
+	 * @param passwords The passwords, stored consecutively
+	 * @param length The length of every password
+	 */
+	public void scramble( final char[] passwords, final int length ) {
+		compile( length );
+		forward.run( passwords );
 	}
-	
+
 	/**
-	 * Swap position X with position Y means that the letters at indexes X and Y
-	 * (counting from 0) should be swapped.
-	 * 
-	 * @param x The index of the first char
-	 * @param y The index of the second char
+	 * Unscrambles the password by performing the inverse of every instruction
+	 * in reverse order
+	 *
+	 * @param passwrd The password we have
+	 * @return The key that lead to the password
 	 */
-	private void swapPosition( final int x, final int y ) {
-		final char[] pwd = password.toCharArray( );
-		final char c = pwd[x];
-		pwd[x] = pwd[y];
-		pwd[y] = c;
-		password = String.valueOf( pwd );
+	public String unscramble( final String passwrd ) {
+		final char[] pwd = passwrd.toCharArray( );
+		unscramble( pwd, pwd.length );
+		return new String( pwd );
 	}
-	
+
 	/**
-	 * Swap letter X with letter Y means that the letters X and Y should be
-	 * swapped (regardless of where they appear in the string).
-	 * 
-	 * @param x The first char
-	 * @param y The second char
+	 * Unscrambles a batch of passwords of equal length in place
+	 *
+	 * @param passwords The passwords, stored consecutively
+	 * @param length The length of every password
 	 */
-	private void swapLetters( final char x, final char y ) {
-		swapPosition( password.indexOf( x ), password.indexOf( y ) );
+	public void unscramble( final char[] passwords, final int length ) {
+		compile( length );
+		inverse.run( passwords );
 	}
-	
+
 	/**
-	 * Rotate left/right X steps means that the whole string should be rotated;
-	 * for example, one right rotation would turn abcd into dabc.
-	 * 
-	 * @param left True for left rotation, false for right
-	 * param steps The number of positions to rotate
+	 * Compiles the scramble and unscramble programs for the password length,
+	 * unless they are already available
+	 *
+	 * @param n The password length
 	 */
-	private void rotate( final boolean left, final int steps ) {
-		// make sure we rotate once
-		final int s = steps % password.length( );
-
-		if( left ) 
-			password = password.substring( s ) + password.substring( 0, s );
-		else
-			password = password.substring( password.length( ) - s ) + password.substring( 0, password.length( ) - s );
+	private void compile( final int n ) {
+		if( forward != null && forward.n == n ) return;
+		if( n < minlength ) throw new IllegalArgumentException( "Passwords must be at least " + minlength + " characters long" );
+
+		// the rotation for every index of the rotation letter, and the inverse
+		// rotation for every index that it ends up at. The final index
+		// determines the rotation only if no two indices end up there.
+		final int[] rotate = new int[ n ];
+		final int[] unrotate = new int[ n ];
+		final int[] count = new int[ n ];
+		for( int i = 0; i < n; i++ ) {
+			rotate[i] = (1 + i + (i >= 4 ? 1 : 0)) % n;
+			final int j = (i + rotate[i]) % n;
+			unrotate[j] = -rotate[i];
+			count[j]++;
+		}
+
+		final Program fwd = new Program( n );
+		final Program inv = new Program( n );
+		for( int i = 0; i < kind.length; i++ ) {
+			final int k = kind.length - 1 - i;
+			switch( kind[i] ) {
+				case SWAP_LETTER: fwd.swapLetters( x[i], y[i] ); break;
+
+				case ROTATE_LETTER: {
+					final int[][] perms = new int[ n ][];
+					for( int j = 0; j < n; j++ ) perms[j] = getPermutation( n, ROTATE_RIGHT, rotate[j], 0 );
+					fwd.addLetterStep( x[i], perms );
+					break;
+				}
+
+				default: fwd.addStep( getPermutation( n, kind[i], x[i], y[i] ) );
+			}
+
+			// the inverse program performs the inverted operations in reverse order,
+			// position swaps and reversals are their own inverse
+			switch( kind[k] ) {
+				case SWAP_LETTER: inv.swapLetters( x[k], y[k] ); break;
+
+				case ROTATE_LETTER: {
+					final int[][] perms = new int[ n ][];
+					for( int j = 0; j < n; j++ )
+						if( count[j] == 1 ) perms[j] = getPermutation( n, ROTATE_RIGHT, unrotate[j], 0 );
+					inv.addLetterStep( x[k], perms );
+					break;
+				}
+
+				case ROTATE_LEFT: inv.addStep( getPermutation( n, ROTATE_RIGHT, x[k], 0 ) ); break;
+				case ROTATE_RIGHT: inv.addStep( getPermutation( n, ROTATE_LEFT, x[k], 0 ) ); break;
+				case MOVE: inv.addStep( getPermutation( n, MOVE, y[k], x[k] ) ); break;
+				default: inv.addStep( getPermutation( n, kind[k], x[k], y[k] ) );
+			}
+		}
+
+		forward = fwd;
+		inverse = inv;
 	}
-	
+
 	/**
-	 * Rotate based on position of letter X means that the whole string should be
-	 * rotated to the right based on the index of letter X (counting from 0) as
-	 * determined before this instruction does any rotations. Once the index is
-	 * determined, rotate the string to the right one time, plus a number of
-	 * times equal to that index, plus one additional time if the index was at
-	 * least 4.
-	 * 
-	 * @param x The character to rotate around
+	 * Builds the permutation of a positional operation by applying it to the
+	 * identity, such that p[i] is the index of the letter that ends up at i
+	 *
+	 * @param n The password length
+	 * @param kind The operation kind
+	 * @param x The first operand
+	 * @param y The second operand
+	 * @return The permutation
 	 */
-	private void rotate( final char x ) {
-		final int i = password.indexOf( x );
-		rotate( false, 1 + i + (i >= 4 ? 1 : 0 ) );
+	private static int[] getPermutation( final int n, final int kind, final int x, final int y ) {
+		final int[] p = new int[ n ];
+		for( int i = 0; i < n; i++ ) p[i] = i;
+
+		switch( kind ) {
+			case SWAP_POS: p[x] = y; p[y] = x; break;
+
+			case ROTATE_LEFT: case ROTATE_RIGHT: {
+				final int s = Math.floorMod( kind == ROTATE_RIGHT ? x : -x, n );
+				for( int i = 0; i < n; i++ ) p[ (i + s) % n ] = i;
+				break;
+			}
+
+			case REVERSE: {
+				for( int a = Math.min( x, y ), b = Math.max( x, y ); a <= b; a++, b-- ) {
+					p[a] = b;
+					p[b] = a;
+				}
+				break;
+			}
+
+			case MOVE: {
+				if( x < y ) System.arraycopy( p, x + 1, p, x, y - x );
+				else System.arraycopy( p, y, p, y + 1, x - y );
+				p[y] = x;
+				break;
+			}
+
+			default: throw new RuntimeException( "Not a positional operation: " + kind );
+		}
+		return p;
 	}
-	
+
 	/**
-	 * Reverse positions X through Y means that the span of letters at indexes X
-	 * through Y (including the letters at X and Y) should be reversed in order.
-	 * 
-	 * @param x The start index of the part to reverse
-	 * @param y The end index of the part to reverse
+	 * Composes two permutations
+	 *
+	 * @param p The permutation that is applied first
+	 * @param q The permutation that is applied second
+	 * @return The permutation that applies p and then q
 	 */
-	private void reverse( final int x, final int y ) {
-		final int a = Math.min( x, y );
-		final int b = Math.max( x, y );
-		
-		password = password.substring( 0, a ) + StringUtil.reverse( password.substring( a, b + 1 ) ) + password.substring( b + 1 );
+	private static int[] compose( final int[] p, final int[] q ) {
+		final int[] c = new int[ p.length ];
+		for( int i = 0; i < c.length; i++ ) c[i] = p[ q[i] ];
+		return c;
 	}
-	
+
 	/**
-	 * Move position X to position Y means that the letter which is at index X
-	 * should be removed from the string, then inserted such that it ends up at
-	 * index Y.
+	 * A program compiled for a single password length. It consists of steps
+	 * that each apply a permutation, selected by the index of a letter if the
+	 * step has one, followed by a relabelling of the letters.
 	 */
-	private void move( final int x, final int y ) {
-		final String remove = password.substring( x, x+1 );
-		password = password.substring( 0, x ) + password.substring( x + 1 );
-		password = password.substring( 0, y ) + remove + password.substring( y );
+	private static class Program {
+		/** The password length */
+		private final int n;
+
+		/** The letter that selects the permutation of every step, -1 for none */
+		private int[] letter;
+
+		/** The permutations of every step, indexed by the letter index. An entry
+		 * is null if the operation cannot be performed for that index. */
+		private int[][][] perms;
+
+		/** The number of steps */
+		private int size;
+
+		/** The final label of every letter in the buffer */
+		private final char[] relabel;
+
+		/** The letter in the buffer for every final label */
+		private final char[] label;
+
+		/**
+		 * Creates a new empty program
+		 *
+		 * @param n The password length
+		 */
+		private Program( final int n ) {
+			this.n = n;
+			this.letter = new int[ 16 ];
+			this.perms = new int[ 16 ][][];
+
+			relabel = new char[ LETTERS ];
+			label = new char[ LETTERS ];
+			for( char c = 0; c < LETTERS; c++ ) {
+				relabel[c] = c;
+				label[c] = c;
+			}
+		}
+
+		/**
+		 * Swaps two letters by swapping their final labels
+		 *
+		 * @param a The first letter
+		 * @param b The second letter
+		 */
+		private void swapLetters( final int a, final int b ) {
+			final char la = label[a];
+			final char lb = label[b];
+			label[a] = lb;
+			label[b] = la;
+			relabel[ la ] = (char)b;
+			relabel[ lb ] = (char)a;
+		}
+
+		/**
+		 * Adds a positional permutation, which is composed into the last step
+		 *
+		 * @param p The permutation
+		 */
+		private void addStep( final int[] p ) {
+			if( size == 0 ) {
+				add( -1, new int[][] { p } );
+				return;
+			}
+
+			final int[][] last = perms[ size - 1 ];
+			for( int j = 0; j < last.length; j++ )
+				if( last[j] != null ) last[j] = compose( last[j], p );
+		}
+
+		/**
+		 * Adds a step that selects its permutation by the index of a letter. A
+		 * preceding step without letter is composed into this step.
+		 *
+		 * @param c The letter
+		 * @param p The permutation for every index of the letter
+		 */
+		private void addLetterStep( final int c, final int[][] p ) {
+			// look up the letter as it is labelled in the buffer
+			final int b = label[c];
+
+			if( size > 0 && letter[ size - 1 ] < 0 ) {
+				// the letter ends up at index q^-1[j] after the previous step
+				final int[] q = perms[ size - 1 ][0];
+				final int[][] fused = new int[ n ][];
+				for( int j = 0; j < n; j++ ) {
+					final int[] next = p[ indexOf( q, j ) ];
+					if( next != null ) fused[j] = compose( q, next );
+				}
+				letter[ size - 1 ] = b;
+				perms[ size - 1 ] = fused;
+				return;
+			}
+			add( b, p );
+		}
+
+		/**
+		 * Appends a step to the program
+		 *
+		 * @param c The letter of the step, -1 for none
+		 * @param p The permutations of the step
+		 */
+		private void add( final int c, final int[][] p ) {
+			if( size == letter.length ) {
+				letter = Arrays.copyOf( letter, size * 2 );
+				perms = Arrays.copyOf( perms, size * 2 );
+			}
+			letter[ size ] = c;
+			perms[ size ] = p;
+			size++;
+		}
+
+		/**
+		 * Runs the program on every password in the buffer
+		 *
+		 * @param passwords The passwords, stored consecutively
+		 */
+		private void run( final char[] passwords ) {
+			if( passwords.length % n != 0 ) throw new IllegalArgumentException( "The buffer does not hold passwords of length " + n );
+
+			final char[] tmp = new char[ n ];
+			for( int off = 0; off < passwords.length; off += n ) {
+				for( int s = 0; s < size; s++ ) {
+					final int[] p = letter[s] < 0 ? perms[s][0] : perms[s][ indexOf( passwords, off, (char)letter[s] ) ];
+					if( p == null ) throw new RuntimeException( "The letter rotation is not invertible for passwords of length " + n );
+
+					for( int i = 0; i < n; i++ ) tmp[i] = passwords[ off + p[i] ];
+					System.arraycopy( tmp, 0, passwords, off, n );
+				}
+
+				for( int i = off; i < off + n; i++ )
+					if( passwords[i] < LETTERS ) passwords[i] = relabel[ passwords[i] ];
+			}
+		}
+
+		/**
+		 * Finds the index of a letter in a password
+		 *
+		 * @param pwd The password buffer
+		 * @param off The offset of the password
+		 * @param c The letter to find
+		 * @return The index of the letter within the password
+		 */
+		private int indexOf( final char[] pwd, final int off, final char c ) {
+			for( int i = 0; i < n; i++ )
+				if( pwd[ off + i ] == c ) return i;
+			throw new RuntimeException( "Letter " + c + " not found in password " + new String( pwd, off, n ) );
+		}
+
+		/**
+		 * Finds the index of a value in a permutation
+		 *
+		 * @param p The permutation
+		 * @param v The value
+		 * @return The index i such that p[i] = v
+		 */
+		private static int indexOf( final int[] p, final int v ) {
+			for( int i = 0; i < p.length; i++ )
+				if( p[i] == v ) return i;
+			throw new RuntimeException( "Invalid permutation" );
+		}
 	}
 }
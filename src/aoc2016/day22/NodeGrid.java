@@ -1,177 +1,329 @@
 package aoc2016.day22;
 
-import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Set;
-import java.util.Stack;
 
 import aocutil.geometry.Coord2D;
 import aocutil.grid.CoordGrid;
 
+/**
+ * The grid of storage nodes in the Easter Bunny's HQ
+ *
+ * Next to the grid of nodes, the used and available space of every node is
+ * kept in primitive arrays indexed by y * width + x. Viable pairs are counted
+ * using binary search over the sorted available space and the search for the
+ * minimal number of data moves is an A* search over the positions of the empty
+ * node and the data, encoded in a single int.
+ *
+ * @author Joris
+ */
 public class NodeGrid {
 	/** The grid of storage nodes */
 	private final CoordGrid<Node> nodes;
-	
+
+	/** The width and height of the grid */
+	private final int width, height;
+
+	/** The nodes by their index, null if there is no node at the position */
+	private final Node[] index;
+
+	/** The used and available space of every node */
+	private final int[] used, avail;
+
 	/**
 	 * Creates a new NodeGrid
-	 * 
+	 *
 	 * @param nodes The grid of nodes to use
 	 */
 	private NodeGrid( final CoordGrid<Node> nodes ) {
 		this.nodes = nodes;
+
+		int w = 0, h = 0;
+		for( final Node n : nodes.getValues( ) ) {
+			w = Math.max( w, n.getPosition( ).x + 1 );
+			h = Math.max( h, n.getPosition( ).y + 1 );
+		}
+		this.width = w;
+		this.height = h;
+
+		index = new Node[ w * h ];
+		used = new int[ w * h ];
+		avail = new int[ w * h ];
+		for( final Node n : nodes.getValues( ) ) {
+			final int i = n.getPosition( ).y * w + n.getPosition( ).x;
+			index[i] = n;
+			used[i] = n.getUsed( );
+			avail[i] = n.getAvailable( );
+		}
 	}
-	
+
 	/**
 	 * Finds all viable pairs (n1,n2) such that:
 	 * - n1 is not empty
 	 * - n1 != n2
 	 * - n1.used <= n2.available
-	 * 
+	 *
 	 * @return The count of viable pairs
 	 */
-	public int countViablePairs( ) {
-		return getViablePairs( ).size();
-	}
-	
-	private List<Node[]> getViablePairs( ) {
-		final List<Node[]> pairs = new ArrayList<>( );
-		for( final Node n1 : nodes.getValues( ) ) {
-			for( final Node n2: nodes.getValues( ) ) {
-				if( n1.equals( n2 ) ) continue;
-				
-				// check conditions for viable pair
-				if( n1.getUsed( ) == 0 ) continue;
-				if( n1.getUsed( ) > n2.getAvailable( ) ) continue;
-				
-				// this is a viable pair!
-				pairs.add( new Node[] { n1, n2 } );
-			}
+	public long countViablePairs( ) {
+		// sort the available space of all nodes, so that the nodes that can hold
+		// the data of n1 are found by binary search
+		final int[] sorted = new int[ index.length ];
+		int N = 0;
+		for( int i = 0; i < index.length; i++ )
+			if( index[i] != null ) sorted[ N++ ] = avail[i];
+		Arrays.sort( sorted, 0, N );
+
+		long pairs = 0;
+		for( int i = 0; i < index.length; i++ ) {
+			if( index[i] == null || used[i] == 0 ) continue;
+
+			// count the nodes with enough space, excluding n1 itself
+			pairs += N - lowerBound( sorted, N, used[i] );
+			if( avail[i] >= used[i] ) pairs--;
 		}
-		
 		return pairs;
 	}
-	
+
 	/**
-	 * Go over the nodes in this grid and flag nodes as stuck if the data can 
-	 * never be moved to one of its neighbours
+	 * Go over the nodes in this grid and flag nodes as stuck if they are not in
+	 * any viable pair, i.e. no node can ever hold its data and it can never hold
+	 * the data of another node
 	 */
-	private void flagStuckNodes( ) {		
-		// look for any node that has no other node to drop its data onto
-		final List<Node[]> pairs = getViablePairs( );
-		for( final Node n : nodes.getValues( ) ) {
-			final long count = pairs.stream( ).filter( x-> x[0].equals( n ) || x[1].equals( n ) ).count( );
-			if( count == 0 ) n.flagAsStuck( );
+	private void flagStuckNodes( ) {
+		// only the largest available space and the smallest non-zero used space of
+		// the other nodes matter, track the best two of both
+		int maxavail = -1, maxavail2 = -1, maxidx = -1;
+		int minused = Integer.MAX_VALUE, minused2 = Integer.MAX_VALUE, minidx = -1;
+		for( int i = 0; i < index.length; i++ ) {
+			if( index[i] == null ) continue;
+
+			if( avail[i] > maxavail ) {
+				maxavail2 = maxavail;
+				maxavail = avail[i];
+				maxidx = i;
+			} else if( avail[i] > maxavail2 ) maxavail2 = avail[i];
+
+			if( used[i] == 0 ) continue;
+			if( used[i] < minused ) {
+				minused2 = minused;
+				minused = used[i];
+				minidx = i;
+			} else if( used[i] < minused2 ) minused2 = used[i];
+		}
+
+		for( int i = 0; i < index.length; i++ ) {
+			if( index[i] == null ) continue;
+
+			final int otheravail = i == maxidx ? maxavail2 : maxavail;
+			final int otherused = i == minidx ? minused2 : minused;
+			final boolean canmove = used[i] > 0 && used[i] <= otheravail;
+			final boolean canreceive = otherused <= avail[i];
+			if( !canmove && !canreceive ) index[i].flagAsStuck( );
 		}
 	}
-	
+
 	/**
 	 * Determine the number of data moves required to get all data from the
 	 * source node to node (0,0)
-	 * 
+	 *
 	 * @param source The node to get data from
 	 * @return The minimal number of data moves required
 	 */
 	public long getMinimalDataMoves( final Coord2D source ) {
 		// nodes can be considered as stuck when no node can receive their data
 		flagStuckNodes( );
-				
-		// track the node on which the data resides, the empty node and the target
-		final Node target = nodes.get( new Coord2D( 0, 0 ) );
-		Node datanode = nodes.get( source );
-		Node empty = nodes.getValues( ).stream( ).filter( x -> x.getUsed( ) == 0 ).findFirst( ).get( );
-		
-		long nummoves = 0;
-		while( !datanode.equals( target ) ) {
-			// find "shortest path" to empty the node to the left of the datasource
-			final NodePath moves = getShortestPath( empty, nodes.get( datanode.getPosition( ).move( -1, 0 ) ), datanode );
-			
-			// move the data alogn the shortest path
-			for( int i = 1; i < moves.length( ); i++ )
-				moves.get( i ).moveData( moves.get( i - 1 ) );
-			
-			// then move the data into the newly empty node
-			empty = moves.tail( );
-			datanode.moveData( empty );
-			empty = datanode;
-			datanode = nodes.get( datanode.getPosition( ).move( -1, 0 ) );
-			
-			// and update move count
-			nummoves += (moves.length( ) - 1) + 1;
+
+		final int N = width * height;
+		if( (long)N * N > Integer.MAX_VALUE ) throw new RuntimeException( "The grid is too large to encode its states: " + width + "x" + height );
+		if( source.x < 0 || source.y < 0 || source.x >= width || source.y >= height || !isOpen( source.y * width + source.x ) ) throw new IllegalArgumentException( "Invalid data source: " + source );
+
+		// the search moves the empty node around, the data only moves if the
+		// empty node moves onto it
+		int empty = -1;
+		for( int i = 0; i < N; i++ ) {
+			if( index[i] == null || used[i] != 0 ) continue;
+			if( empty >= 0 ) throw new RuntimeException( "The grid contains more than one empty node" );
+			empty = i;
+		}
+		if( empty < 0 ) throw new RuntimeException( "The grid does not contain an empty node" );
+
+		final int data = source.y * width + source.x;
+		if( data == 0 ) return 0;
+
+		// A* search over states empty * N + data. The estimate is consistent and
+		// moves are reversible, so the f-value of a successor is at most two more
+		// than that of the state and a ring of three buckets suffices as queue.
+		final long[] visited = new long[ (int)(((long)N * N + 63) / 64) ];
+		final IntBucket[] buckets = { new IntBucket( ), new IntBucket( ), new IntBucket( ) };
+		int f = getMinimalMovesEstimate( empty, data );
+		buckets[ f % 3 ].push( empty * N + data );
+
+		final int[] dx = { 0, -1, 1, 0 };
+		final int[] dy = { -1, 0, 0, 1 };
+		while( !buckets[0].isEmpty( ) || !buckets[1].isEmpty( ) || !buckets[2].isEmpty( ) ) {
+			final IntBucket bucket = buckets[ f % 3 ];
+			if( bucket.isEmpty( ) ) {
+				f++;
+				continue;
+			}
+
+			final int state = bucket.pop( );
+			if( (visited[ state >>> 6 ] & (1l << state)) != 0 ) continue;
+			visited[ state >>> 6 ] |= 1l << state;
+
+			final int e = state / N;
+			final int d = state % N;
+			final int g = f - getMinimalMovesEstimate( e, d );
+			if( d == 0 ) return g;
+
+			final int ex = e % width, ey = e / width;
+			for( int k = 0; k < 4; k++ ) {
+				final int nx = ex + dx[k], ny = ey + dy[k];
+				if( nx < 0 || ny < 0 || nx >= width || ny >= height ) continue;
+				final int n = ny * width + nx;
+				if( !isOpen( n ) ) continue;
+
+				// moving the data into the empty node swaps both positions
+				final int next = n == d ? n * N + e : n * N + d;
+				if( (visited[ next >>> 6 ] & (1l << next)) != 0 ) continue;
+				buckets[ (g + 1 + getMinimalMovesEstimate( next / N, next % N )) % 3 ].push( next );
+			}
 		}
-		
-		return nummoves;
+
+		throw new RuntimeException( "Failed to find a way to move the data from " + source + " to (0,0)" );
 	}
-	
+
 	/**
-	 * Determines the shortest viable path between the two nodes (BFS) but prevent
-	 * moving the data node itself. That is, that node is excluded from the path
-	 * 
-	 * @param start The starting node
-	 * @param goal The target node
-	 * @param datanode The node containing the data
-	 * @return The shortest NodePath between the two
+	 * Estimates the number of moves required to get the data to (0,0) as the
+	 * exact number of moves in an unbounded grid without stuck nodes. The empty
+	 * node first moves next to the data node, going around it if it is in the
+	 * way. From there, moving the data straight takes five moves per step and
+	 * alternating directions takes three moves per step.
+	 *
+	 * @param empty The index of the empty node
+	 * @param data The index of the node that holds the data
+	 * @return A lower bound on the number of moves
 	 */
-	private NodePath getShortestPath( final Node start, final Node goal, final Node datanode ) {
-		// add the data node to the visited list so it is itself not considered
-		final Set<Node> visited = new HashSet<>( );
-		visited.add( datanode );
-		
-		// now find the shortest path
-		Stack<NodePath> paths = new Stack<>( );
-		paths.add( new NodePath( start ) );
-		while( paths.size( ) > 0 ) {
-			final Stack<NodePath> explore = new Stack<>( );
-			while( paths.size( ) > 0 ) {
-				final NodePath p = paths.pop( );
-				if( p.tail( ).equals( goal ) ) return p;
-				
-				// check neighbours
-				for( final Coord2D nc : nodes.getNeighbours( p.tail( ).getPosition( ), false ) ) {
-					final Node n = nodes.get( nc );
-					if( visited.contains( n ) || n.isStuck( ) ) continue;
-					visited.add( n );
-					explore.add( p.extend( n ) );					
-				}
-			}
-			
-			paths = explore;
+	private int getMinimalMovesEstimate( final int empty, final int data ) {
+		final int x = data % width, y = data / width;
+		if( x == 0 && y == 0 ) return 0;
+
+		// the cost depends on the side of the data node the empty node moves to
+		final int ex = empty % width, ey = empty / width;
+		int moves = getDetour( ex, ey, x, y, 1, 0 ) + (x >= y ? 5 * x + y : 5 * y + x - 2);
+		moves = Math.min( moves, getDetour( ex, ey, x, y, 0, 1 ) + (y >= x ? 5 * y + x : 5 * x + y - 2) );
+		if( x > 0 ) moves = Math.min( moves, getDetour( ex, ey, x, y, -1, 0 ) + (x > y ? 5 * x + y - 4 : 5 * y + x - 2) );
+		if( y > 0 ) moves = Math.min( moves, getDetour( ex, ey, x, y, 0, -1 ) + (y > x ? 5 * y + x - 4 : 5 * x + y - 2) );
+		return moves;
+	}
+
+	/**
+	 * Determines the number of moves for the empty node to reach a neighbour of
+	 * the data node in a grid without stuck nodes
+	 *
+	 * @param ex The x coordinate of the empty node
+	 * @param ey The y coordinate of the empty node
+	 * @param x The x coordinate of the data node
+	 * @param y The y coordinate of the data node
+	 * @param dx The x offset of the neighbour
+	 * @param dy The y offset of the neighbour
+	 * @return The Manhattan distance, plus two if the data node is in between
+	 */
+	private static int getDetour( final int ex, final int ey, final int x, final int y, final int dx, final int dy ) {
+		final int dist = Math.abs( ex - x - dx ) + Math.abs( ey - y - dy );
+		final boolean blocked = (dy == 0 && ey == y && (ex - x) * dx < 0) || (dx == 0 && ex == x && (ey - y) * dy < 0);
+		return blocked ? dist + 2 : dist;
+	}
+
+	/**
+	 * Checks whether the empty node can move to the given node
+	 *
+	 * @param i The index of the node
+	 * @return True if the node exists and is not stuck
+	 */
+	private boolean isOpen( final int i ) {
+		return index[i] != null && !index[i].isStuck( );
+	}
+
+	/**
+	 * Finds the first index in the sorted array prefix that holds a value of at
+	 * least the key
+	 *
+	 * @param values The sorted values
+	 * @param n The number of values to consider
+	 * @param key The key to search for
+	 * @return The index of the first value not less than the key, n if there is
+	 *   none
+	 */
+	private static int lowerBound( final int[] values, final int n, final int key ) {
+		int l = 0, h = n;
+		while( l < h ) {
+			final int m = (l + h) >>> 1;
+			if( values[m] < key ) l = m + 1;
+			else h = m;
+		}
+		return l;
+	}
+
+	/**
+	 * Stack of int states with the same f-value
+	 */
+	private static class IntBucket {
+		/** The states in the bucket */
+		private int[] states = new int[ 64 ];
+
+		/** The number of states */
+		private int size;
+
+		/** @return True if the bucket holds no states */
+		private boolean isEmpty( ) { return size == 0; }
+
+		/**
+		 * Adds a state to the bucket
+		 *
+		 * @param state The state
+		 */
+		private void push( final int state ) {
+			if( size == states.length ) states = Arrays.copyOf( states, size * 2 );
+			states[ size++ ] = state;
 		}
-		
-		throw new RuntimeException( "Failed to find a path from " + start + " to " + goal );
+
+		/** @return The most recently added state, which is removed */
+		private int pop( ) { return states[ --size ]; }
 	}
-	
+
 	/**
 	 * Creates a node grid from a set of node descriptions
-	 * 
+	 *
 	 * @param input The list of nodes
 	 * @return The node grid
 	 */
 	public static NodeGrid fromStringList( final List<String> input ) {
 		final CoordGrid<Node> nodes = new CoordGrid<>( null );
-		
+
 		for( final String s : input ) {
 			// skip non-node data
 			if( !s.startsWith( "/dev/grid/node"  ) ) continue;
-			
+
 			final Node n = Node.fromString( s );
 			nodes.set( n.getPosition( ), n );
 		}
 		nodes.fixWindow( );
-		
+
 		return new NodeGrid( nodes );
 	}
-	
+
 	/** @return The grid of nodes */
 	@Override
 	public String toString( ) {
 		return nodes.toString( x -> x.toString( ) + " " );
 	}
-	
+
 	/**
 	 * Visualises the movement of data using a simple grid of empty/full and
 	 * stuck nodes
-	 *  
+	 *
 	 * @param sourcedata The node that currently holds the source data
 	 * @return The grid of nodes as a simple visual
 	 */
@@ -3,8 +3,12 @@ package aoc2016.day23;
 import java.util.ArrayList;
 import java.util.List;
 
+import aoc2016.assembunny.AssemBunnyVM;
+
 /**
- * A computer that runs assembunny 
+ * A computer that runs assembunny by interpreting the instruction strings.
+ * Superseded by the AssemBunnyVM, it is kept as reference implementation for
+ * benchmarking.
  * 
  * @author Joris
  */
@@ -159,4 +163,50 @@ public class AssemBunnySafe {
 		R[ridx] = v;
 	}
 
+	
+	/**
+	 * Compares the number of instructions per second that are executed by this
+	 * interpreter and by the AssemBunnyVM, both with and without folding of
+	 * loop idioms. The instruction count is that of the unfolded program.
+	 * 
+	 * @param prog The program to run
+	 * @param reps The number of timed runs per interpreter, after one warm-up
+	 * @param r The initial register values
+	 * @return A description of the instruction rates of the interpreters
+	 */
+	public static String benchmark( final List<String> prog, final int reps, final long... r ) {
+		final AssemBunnySafe safe = new AssemBunnySafe( );
+		final AssemBunnyVM vm = new AssemBunnyVM( prog );
+		
+		// count the instructions of the program once
+		vm.setFolding( false );
+		vm.runProgram( r );
+		final long instructions = vm.getSteps( );
+		final long result = vm.getRegister( 'a' );
+		
+		final long[] times = new long[ 3 ];
+		for( int i = 0; i <= reps; i++ ) {
+			long t0 = System.nanoTime( );
+			safe.runProgram( prog, r );
+			final long t1 = System.nanoTime( );
+			vm.setFolding( false );
+			vm.runProgram( r );
+			final long t2 = System.nanoTime( );
+			vm.setFolding( true );
+			vm.runProgram( r );
+			final long t3 = System.nanoTime( );
+			
+			if( safe.read( "a" ) != result || vm.getRegister( 'a' ) != result ) throw new RuntimeException( "Interpreters disagree: " + safe.read( "a" ) + " vs " + vm.getRegister( 'a' ) );
+			
+			// skip the warm-up run
+			if( i == 0 ) continue;
+			times[0] += t1 - t0;
+			times[1] += t2 - t1;
+			times[2] += t3 - t2;
+		}
+		
+		final double total = instructions * (double)reps * 1e9;
+		return String.format( "%d instructions, interpreter: %.3g instr/s, VM: %.3g instr/s, folded VM: %.3g instr/s",
+				instructions, total / times[0], total / times[1], total / times[2] );
+	}
 }
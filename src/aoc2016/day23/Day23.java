@@ -2,6 +2,7 @@ package aoc2016.day23;
 
 import java.util.List;
 
+import aoc2016.assembunny.AssemBunnyVM;
 import aocutil.io.FileReader;
 
 public class Day23 {
@@ -33,8 +34,8 @@ public class Day23 {
 	 * @return  The result stored in register a after all operations
 	 */
 	private static long part1( final List<String> input, final long... R ) {
-		final AssemBunnySafe abs = new AssemBunnySafe( );
-		abs.runProgram( input, R );
-		return abs.read( "a" );
+		final AssemBunnyVM vm = new AssemBunnyVM( input );
+		vm.runProgram( R );
+		return vm.getRegister( 'a' );
 	}
 }
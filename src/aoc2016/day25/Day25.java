@@ -2,7 +2,9 @@ package aoc2016.day25;
 
 import java.util.List;
 
-import aoc2016.day25.AssemBunnyAntenna.OutputConsumer;
+import aoc2016.assembunny.AssemBunnyVM;
+import aoc2016.assembunny.AssemBunnyVM.OutputConsumer;
+import aoc2016.assembunny.InterruptException;
 import aocutil.io.FileReader;
 
 public class Day25 {
@@ -30,11 +32,11 @@ public class Day25 {
 	 * @return The smallest integer
 	 */
 	private static long part1( final List<String> input ) {
-		final AssemBunnyAntenna aba = new AssemBunnyAntenna( );
+		final AssemBunnyVM vm = new AssemBunnyVM( input );
 		for( int i = 0; i < Integer.MAX_VALUE; i++ ) {
 			
 			// consume signals and interrupt if we have enough signals
-			aba.setOutputConsumer( new OutputConsumer( ) {
+			vm.setOutputConsumer( new OutputConsumer( ) {
 				private int count = 0;
 				private long prev = 1;
 				
@@ -49,7 +51,7 @@ public class Day25 {
 				}
 			} );
 			try { 
-				aba.runProgram( input, i );
+				vm.run( i );
 			} catch( InterruptException ie ) {
 				// did we find enough subsequent alternating signals  
 				if( ie.getCode( ) == 0 ) return i;
@@ -0,0 +1,175 @@
+package aoc2016.md5;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+/**
+ * Lazy stream of the MD5 digests of salt + index for increasing indices. The
+ * digests are computed in parallel batches ahead of the consumer, while the
+ * consumer works on the current batch the next batch is already prefetched.
+ * Only a bounded window of digests is retained: the stream guarantees that
+ * the last requested index and at least window indices before it are
+ * available.
+ *
+ * @author Joris
+ */
+public class MD5HashStream {
+	/** The per-thread hashers used to compute the digests */
+	private static final ThreadLocal<MD5Hasher> hashers = ThreadLocal.withInitial( MD5Hasher::new );
+
+	/** The salt bytes */
+	private final byte[] salt;
+
+	/** The number of times each hash is stretched */
+	private final int stretching;
+
+	/** The number of hashes computed per batch */
+	private final int batch;
+
+	/** The number of digests that fit the ring buffer */
+	private final int capacity;
+
+	/** The ring buffer of digests, 16 bytes per index */
+	private final byte[] ring;
+
+	/** The first index that has been computed since the last skip */
+	private long first;
+
+	/** The index after the last available digest */
+	private long end;
+
+	/** The batch that is currently being prefetched, starting at end */
+	private CompletableFuture<Void> prefetch;
+
+	/**
+	 * Creates a new hash stream without stretching
+	 *
+	 * @param salt The salt to prefix the indices with
+	 */
+	public MD5HashStream( final String salt ) {
+		this( salt, 0, 0 );
+	}
+
+	/**
+	 * Creates a new hash stream
+	 *
+	 * @param salt The salt to prefix the indices with
+	 * @param stretching The number of times every hash is stretched by
+	 *   rehashing its hex encoding
+	 * @param window The number of digests before the last requested index that
+	 *   must remain available
+	 */
+	public MD5HashStream( final String salt, final int stretching, final int window ) {
+		this.salt = salt.getBytes( StandardCharsets.US_ASCII );
+		this.stretching = stretching;
+
+		// stretched hashes are expensive, use smaller batches to limit overshoot
+		this.batch = Math.max( stretching > 0 ? 256 : 4096, Runtime.getRuntime( ).availableProcessors( ) * 16 );
+		this.capacity = window + 2 * batch;
+		this.ring = new byte[ capacity * 16 ];
+
+		this.first = 0;
+		this.end = 0;
+		this.prefetch = startBatch( 0 );
+	}
+
+	/**
+	 * Copies the digest for the given index into the output array
+	 *
+	 * @param index The index
+	 * @param out The array of (at least) 16 bytes to copy the digest into
+	 */
+	public void getDigest( final long index, final byte[] out ) {
+		System.arraycopy( ring, slot( index ), out, 0, 16 );
+	}
+
+	/**
+	 * Returns the value of a single nibble of the digest for the given index
+	 *
+	 * @param index The index
+	 * @param n The nibble position within the digest
+	 * @return The nibble value
+	 */
+	public int getNibble( final long index, final int n ) {
+		final int b = ring[ slot( index ) + (n >> 1) ];
+		return (n & 1) == 0 ? (b >> 4) & 0xF : b & 0xF;
+	}
+
+	/**
+	 * Checks whether the hex encoding of the digest starts with the prefix
+	 *
+	 * @param index The index
+	 * @param prefix The hexadecimal prefix
+	 * @return True iff the digest of the index starts with the prefix
+	 */
+	public boolean startsWith( final long index, final String prefix ) {
+		final int offset = slot( index );
+		for( int i = 0; i < prefix.length( ); i++ ) {
+			final int b = ring[ offset + (i >> 1) ];
+			final int nib = (i & 1) == 0 ? (b >> 4) & 0xF : b & 0xF;
+			if( nib != Character.digit( prefix.charAt( i ), 16 ) ) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the hex string of the digest for the given index
+	 *
+	 * @param index The index
+	 * @return The lowercase hex encoded digest
+	 */
+	public String getHex( final long index ) {
+		final byte[] d = new byte[ 16 ];
+		getDigest( index, d );
+		return MD5Hasher.toHex( d );
+	}
+
+	/**
+	 * Determines the ring buffer offset of the digest for the given index,
+	 * advances the stream if the index is not yet available
+	 *
+	 * @param index The index
+	 * @return The offset of its digest in the ring buffer
+	 */
+	private int slot( final long index ) {
+		if( index < 0 ) throw new IllegalArgumentException( "Invalid index: " + index );
+
+		if( index >= end ) {
+			// skip ahead if the index is far beyond the current batches
+			if( index >= end + capacity ) {
+				prefetch.join( );
+				first = index;
+				end = index;
+				prefetch = startBatch( end );
+			}
+
+			while( index >= end ) {
+				prefetch.join( );
+				end += batch;
+				prefetch = startBatch( end );
+			}
+		} else if( index < first || index < end - capacity + batch ) {
+			throw new IllegalArgumentException( "Index " + index + " is no longer available in the stream window" );
+		}
+
+		return (int)(index % capacity) * 16;
+	}
+
+	/**
+	 * Starts asynchronous computation of the batch of digests at the given
+	 * start index
+	 *
+	 * @param start The first index of the batch
+	 * @return The future that completes when the batch is computed
+	 */
+	private CompletableFuture<Void> startBatch( final long start ) {
+		return CompletableFuture.runAsync( ( ) ->
+			IntStream.range( 0, batch ).parallel( ).forEach( i -> {
+				final long index = start + i;
+				final byte[] d = hashers.get( ).hash( salt, index, stretching );
+				System.arraycopy( d, 0, ring, (int)(index % capacity) * 16, 16 );
+			} )
+		);
+	}
+}
@@ -0,0 +1,147 @@
+package aoc2016.md5;
+
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Reusable MD5 hasher that computes digests without allocating intermediate
+ * strings. The input, digest and hex buffers are owned by the hasher and are
+ * overwritten by every call, therefore a hasher must not be shared between
+ * threads.
+ *
+ * @author Joris
+ */
+public class MD5Hasher {
+	/** The hex characters used to encode digests */
+	private static final byte[] HEX = "0123456789abcdef".getBytes( StandardCharsets.US_ASCII );
+
+	/** The MD5 message digest */
+	private final MessageDigest md5;
+
+	/** The buffer that holds the result of the last digest */
+	private final byte[] digest;
+
+	/** The buffer used to hex encode digests when stretching */
+	private final byte[] hex;
+
+	/** The input buffer */
+	private byte[] input;
+
+	/**
+	 * Creates a new MD5 hasher
+	 */
+	public MD5Hasher( ) {
+		try {
+			md5 = MessageDigest.getInstance( "MD5" );
+		} catch( NoSuchAlgorithmException e ) {
+			throw new RuntimeException( "MD5 is not supported", e );
+		}
+
+		digest = new byte[ 16 ];
+		hex = new byte[ 32 ];
+		input = new byte[ 64 ];
+	}
+
+	/**
+	 * Computes the (stretched) digest of the salt followed by the decimal digits
+	 * of the index
+	 *
+	 * @param salt The salt bytes
+	 * @param index The index to append to the salt
+	 * @param stretching The number of times the hex encoded hash is rehashed
+	 * @return The digest, stored in the internal buffer of the hasher
+	 */
+	public byte[] hash( final byte[] salt, final long index, final int stretching ) {
+		if( input.length < salt.length + 20 ) input = new byte[ salt.length + 20 ];
+		System.arraycopy( salt, 0, input, 0, salt.length );
+
+		// write the index digits after the salt
+		int digits = 1;
+		for( long n = index / 10; n > 0; n /= 10 ) digits++;
+		long n = index;
+		for( int i = salt.length + digits - 1; i >= salt.length; i-- ) {
+			input[i] = (byte)('0' + (n % 10));
+			n /= 10;
+		}
+
+		return hash( input, 0, salt.length + digits, stretching );
+	}
+
+	/**
+	 * Computes the (stretched) digest of a string
+	 *
+	 * @param str The string to hash
+	 * @param stretching The number of times the hex encoded hash is rehashed
+	 * @return The digest, stored in the internal buffer of the hasher
+	 */
+	public byte[] hash( final String str, final int stretching ) {
+		final byte[] bytes = str.getBytes( StandardCharsets.US_ASCII );
+		return hash( bytes, 0, bytes.length, stretching );
+	}
+
+	/**
+	 * Computes the (stretched) digest of part of a byte array
+	 *
+	 * @param data The data array
+	 * @param offset The offset of the first byte to hash
+	 * @param length The number of bytes to hash
+	 * @param stretching The number of times the hex encoded hash is rehashed
+	 * @return The digest, stored in the internal buffer of the hasher
+	 */
+	public byte[] hash( final byte[] data, final int offset, final int length, final int stretching ) {
+		md5.update( data, offset, length );
+		finish( );
+
+		// rehash the hex encoding of the digest
+		for( int s = 0; s < stretching; s++ ) {
+			for( int i = 0; i < digest.length; i++ ) {
+				hex[ 2 * i ] = HEX[ (digest[i] >> 4) & 0xF ];
+				hex[ 2 * i + 1 ] = HEX[ digest[i] & 0xF ];
+			}
+			md5.update( hex, 0, hex.length );
+			finish( );
+		}
+
+		return digest;
+	}
+
+	/**
+	 * Completes the current digest into the digest buffer
+	 */
+	private void finish( ) {
+		try {
+			md5.digest( digest, 0, digest.length );
+		} catch( DigestException e ) {
+			throw new RuntimeException( "Failed to compute digest", e );
+		}
+	}
+
+	/**
+	 * Returns the value of a single nibble (hex character) in the digest
+	 *
+	 * @param digest The digest
+	 * @param n The index of the nibble
+	 * @return The nibble value (0-15)
+	 */
+	public static int nibble( final byte[] digest, final int n ) {
+		final int b = digest[ n >> 1 ];
+		return (n & 1) == 0 ? (b >> 4) & 0xF : b & 0xF;
+	}
+
+	/**
+	 * Encodes the digest as hex string
+	 *
+	 * @param digest The digest
+	 * @return The lowercase hex string
+	 */
+	public static String toHex( final byte[] digest ) {
+		final byte[] str = new byte[ digest.length * 2 ];
+		for( int i = 0; i < digest.length; i++ ) {
+			str[ 2 * i ] = HEX[ (digest[i] >> 4) & 0xF ];
+			str[ 2 * i + 1 ] = HEX[ digest[i] & 0xF ];
+		}
+		return new String( str, StandardCharsets.US_ASCII );
+	}
+}